@@ -0,0 +1,101 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.models.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ACL entries, workflow role mappings and creation DTOs, built for every document, part and workflow the loader creates
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AclBenchmark {
+
+    private WorkflowModelDTO workflowModel;
+    private CreationTemplate partTemplate;
+
+    @Setup
+    public void setUp() {
+        List<TaskModelDTO> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UserDTO user = new UserDTO();
+            user.setLogin("user" + i);
+            UserGroupDTO group = new UserGroupDTO();
+            group.setId("Group" + (i + 1));
+
+            RoleDTO role = new RoleDTO();
+            role.setName("role" + i);
+            role.setDefaultAssignedUsers(Collections.singletonList(user));
+            role.setDefaultAssignedGroups(Collections.singletonList(group));
+
+            TaskModelDTO task = new TaskModelDTO();
+            task.setNum(i);
+            task.setRole(role);
+            tasks.add(task);
+        }
+
+        ActivityModelDTO activity = new ActivityModelDTO();
+        activity.setStep(0);
+        activity.setTaskModels(tasks);
+        activity.setType(ActivityModelDTO.TypeEnum.SEQUENTIAL);
+
+        workflowModel = new WorkflowModelDTO();
+        workflowModel.setId("workflow");
+        workflowModel.setActivityModels(Collections.singletonList(activity));
+
+        partTemplate = new CreationTemplate("workspace")
+                .withTemplateId("SEATS")
+                .withDescription("Sample part create with sample loader")
+                .withAcl(SampleLoader.FULL_ACCESS_GROUP_1_AND_2)
+                .withWorkflow(workflowModel, WorkspaceMetadata.resolveDefaultRoles(workflowModel));
+    }
+
+    @Benchmark
+    public List<ACLEntryDTO> aclEntries() {
+        return SampleLoader.aclEntries(
+                ACLEntryDTO.ValueEnum.FULL_ACCESS,
+                ACLEntryDTO.ValueEnum.READ_ONLY,
+                ACLEntryDTO.ValueEnum.READ_ONLY,
+                ACLEntryDTO.ValueEnum.READ_ONLY,
+                ACLEntryDTO.ValueEnum.FORBIDDEN);
+    }
+
+    @Benchmark
+    public PartCreationDTO partFromTemplate() {
+        return partTemplate.part("SEAT-010", "Front seat");
+    }
+
+    @Benchmark
+    public List<RoleMappingDTO> resolveDefaultRoles() {
+        return WorkspaceMetadata.resolveDefaultRoles(workflowModel);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.models.PartIterationDTO;
+import com.docdoku.plm.api.models.PartUsageLinkDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning of a generated product structure, construction of its usage link graph, and JSON
+ * serialization of the assembly iterations the way the API client sends them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BomBenchmark {
+
+    @Param({"1000", "100000"})
+    private int partCount;
+
+    private BomGenerator generator;
+    private List<List<BomGenerator.PlannedPart>> levels;
+    private List<PartIterationDTO> iterations;
+    private ApiClient client;
+
+    @Setup
+    public void setUp() {
+        generator = new BomGenerator();
+        generator.setPartCount(partCount);
+        generator.setDepth(6);
+        generator.setFanOut(10);
+        levels = generator.plan();
+
+        iterations = new ArrayList<>();
+        for (List<BomGenerator.PlannedPart> level : levels) {
+            for (BomGenerator.PlannedPart part : level) {
+                List<PartUsageLinkDTO> links = generator.links(part);
+                if (!links.isEmpty()) {
+                    PartIterationDTO iteration = new PartIterationDTO();
+                    iteration.setComponents(links);
+                    iteration.setIterationNote("Generated assembly");
+                    iterations.add(iteration);
+                }
+            }
+        }
+
+        client = new ApiClient();
+    }
+
+    @Benchmark
+    public List<List<BomGenerator.PlannedPart>> plan() {
+        return generator.plan();
+    }
+
+    @Benchmark
+    public void links(Blackhole blackhole) {
+        for (List<BomGenerator.PlannedPart> level : levels) {
+            for (BomGenerator.PlannedPart part : level) {
+                blackhole.consume(generator.links(part));
+            }
+        }
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (PartIterationDTO iteration : iterations) {
+            blackhole.consume(client.getJSON().serialize(iteration));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming of sample resources and generated geometries, as uploads read them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourceBenchmark {
+
+    @Param({"user-man-001.txt", "BassBoat-FrontSeat.obj", "dodgeengine.obj"})
+    private String resourceName;
+
+    private final byte[] buffer = new byte[8192];
+
+    @Benchmark
+    public long streamResource() throws IOException {
+        return drain(BinarySources.resource(resourceName));
+    }
+
+    @Benchmark
+    public long streamGeneratedGeometry() throws IOException {
+        return drain(BinarySources.generatedGeometry("leaf.obj", 1 << 20, 42));
+    }
+
+    private long drain(BinarySource source) throws IOException {
+        long length = 0;
+        try (InputStream in = source.open()) {
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                length += read;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.*;
+
+/**
+ * Log handler which hands records over to a writer thread through a bounded buffer.
+ *
+ * Logging threads only enqueue the record: formatting, message parameters included, and
+ * writing happen on the writer thread, which writes records in batches and flushes once the
+ * buffer is empty. When the buffer is full, records are either dropped or the logging thread
+ * waits for room. Warnings and errors are never dropped, and dropped records are counted in
+ * the output.
+ *
+ * Closing the handler writes the buffered records first. The log manager closes it when the
+ * JVM exits.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * What a logging thread does when the buffer is full
+     */
+    public enum Overflow {
+        /**
+         * Records below warning are dropped
+         */
+        DROP,
+        /**
+         * The thread waits for room in the buffer
+         */
+        BLOCK
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static final LogRecord END = new LogRecord(Level.OFF, null);
+
+    private final BlockingQueue<LogRecord> buffer;
+    private final Overflow overflow;
+    private final Writer writer;
+    private final boolean closeWriter;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param out         stream records are written to
+     * @param closeStream whether closing the handler closes the stream, false for the console
+     * @param capacity    number of records the buffer holds
+     */
+    public AsyncLogHandler(OutputStream out, boolean closeStream, int capacity, Overflow overflow) {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.overflow = overflow;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out), 8192);
+        this.closeWriter = closeStream;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "sample-loader-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (buffer.offer(record)) {
+            return;
+        }
+        if (overflow == Overflow.DROP && record.getLevel().intValue() < Level.WARNING.intValue()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            buffer.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records are flushed by the writer thread as soon as it catches up
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.put(END);
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long reported = 0;
+        try {
+            while (true) {
+                batch.add(buffer.take());
+                buffer.drainTo(batch, BATCH_SIZE - 1);
+
+                for (LogRecord record : batch) {
+                    if (record == END) {
+                        writer.flush();
+                        return;
+                    }
+                    writer.write(format(record));
+                }
+                batch.clear();
+
+                long drops = dropped.get();
+                if (drops > reported) {
+                    LogRecord warning = new LogRecord(Level.WARNING, (drops - reported) + " log records dropped, the log buffer was full");
+                    warning.setLoggerName(getClass().getName());
+                    writer.write(format(warning));
+                    reported = drops;
+                }
+                if (buffer.isEmpty()) {
+                    writer.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            reportError("Cannot write log records", e, ErrorManager.WRITE_FAILURE);
+        } finally {
+            closed = true;
+            buffer.clear();
+            closeWriter();
+        }
+    }
+
+    private String format(LogRecord record) {
+        try {
+            return getFormatter().format(record);
+        } catch (RuntimeException e) {
+            reportError("Cannot format log record", e, ErrorManager.FORMAT_FAILURE);
+            return "";
+        }
+    }
+
+    private void closeWriter() {
+        try {
+            if (closeWriter) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            reportError("Cannot close log output", e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
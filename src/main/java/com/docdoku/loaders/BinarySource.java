@@ -0,0 +1,50 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content of a file to upload, read as a stream when the request body is written
+ */
+public interface BinarySource {
+
+    /**
+     * Name the file gets on the server
+     */
+    String getFileName();
+
+    /**
+     * Size in bytes, or -1 if unknown (the body is then sent chunked)
+     */
+    long getLength();
+
+    /**
+     * Identifies the content: sources with the same key give the same bytes, whatever their file name
+     */
+    String getContentKey();
+
+    /**
+     * Opens a new stream on the content, may be called again if the request is retried
+     */
+    InputStream open() throws IOException;
+}
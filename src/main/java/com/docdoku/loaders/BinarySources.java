@@ -0,0 +1,216 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Factories of upload contents: sample resources read from the classpath, or generated on the fly
+ */
+public class BinarySources {
+
+    private BinarySources() {
+    }
+
+    /**
+     * Sample resource, streamed from the classpath without being extracted
+     */
+    public static BinarySource resource(String resourceName) {
+        return new ResourceSource(resourceName);
+    }
+
+    /**
+     * Wavefront OBJ geometry of given size, made of random triangles. Same seed gives same content.
+     */
+    public static BinarySource generatedGeometry(String fileName, long size, long seed) {
+        return new GeneratedGeometrySource(fileName, size, seed);
+    }
+
+    private static class ResourceSource implements BinarySource {
+        private final String resourceName;
+        private volatile Long length;
+
+        ResourceSource(String resourceName) {
+            this.resourceName = resourceName;
+        }
+
+        @Override
+        public String getFileName() {
+            return resourceName;
+        }
+
+        /**
+         * Size given by the resource connection, read once. Unknown if the resource is missing.
+         */
+        @Override
+        public long getLength() {
+            Long known = length;
+            if (known == null) {
+                known = -1L;
+                URL url = BinarySources.class.getClassLoader().getResource(SampleLoaderUtils.RESOURCE_PREFIX + resourceName);
+                if (url != null) {
+                    try {
+                        URLConnection connection = url.openConnection();
+                        known = connection.getContentLengthLong();
+                        // Connecting opened the resource, only its size is read here
+                        connection.getInputStream().close();
+                    } catch (IOException e) {
+                        known = -1L;
+                    }
+                }
+                length = known;
+            }
+            return known;
+        }
+
+        @Override
+        public String getContentKey() {
+            return "resource:" + resourceName;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            InputStream in = BinarySources.class.getClassLoader()
+                    .getResourceAsStream(SampleLoaderUtils.RESOURCE_PREFIX + resourceName);
+            if (in == null) {
+                throw new FileNotFoundException("Resource " + SampleLoaderUtils.RESOURCE_PREFIX + resourceName + " not found");
+            }
+            return in;
+        }
+    }
+
+    private static class GeneratedGeometrySource implements BinarySource {
+        private final String fileName;
+        private final long size;
+        private final long seed;
+
+        GeneratedGeometrySource(String fileName, long size, long seed) {
+            this.fileName = fileName;
+            this.size = size;
+            this.seed = seed;
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public long getLength() {
+            return size;
+        }
+
+        @Override
+        public String getContentKey() {
+            return "geometry:" + size + ":" + seed;
+        }
+
+        @Override
+        public InputStream open() {
+            return new GeometryInputStream(size, new Random(seed));
+        }
+    }
+
+    /**
+     * Writes triangles (three vertices and a face) one at a time, then pads the requested size with
+     * a comment line when the next triangle does not fit
+     */
+    private static class GeometryInputStream extends InputStream {
+        private final long size;
+        private final Random random;
+        private long written;
+        private int vertices;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        GeometryInputStream(long size, Random random) {
+            this.size = size;
+            this.random = random;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() {
+            if (position < chunk.length) {
+                return true;
+            }
+            if (written >= size) {
+                return false;
+            }
+
+            StringBuilder triangle = new StringBuilder(128);
+            for (int i = 0; i < 3; i++) {
+                triangle.append("v ").append(coordinate()).append(' ').append(coordinate()).append(' ')
+                        .append(coordinate()).append('\n');
+            }
+            triangle.append("f ").append(vertices + 1).append(' ').append(vertices + 2).append(' ')
+                    .append(vertices + 3).append('\n');
+            vertices += 3;
+
+            chunk = triangle.toString().getBytes(StandardCharsets.US_ASCII);
+            if (written + chunk.length > size) {
+                chunk = padding((int) (size - written));
+            }
+            position = 0;
+            written += chunk.length;
+            return true;
+        }
+
+        private static byte[] padding(int length) {
+            byte[] padding = new byte[length];
+            Arrays.fill(padding, (byte) ' ');
+            padding[0] = '#';
+            padding[length - 1] = '\n';
+            return padding;
+        }
+
+        private String coordinate() {
+            return Float.toString(random.nextFloat() * 100);
+        }
+    }
+}
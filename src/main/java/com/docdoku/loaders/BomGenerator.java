@@ -0,0 +1,335 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.*;
+import com.docdoku.plm.api.models.utils.LastIterationHelper;
+import com.docdoku.plm.api.services.PartApi;
+import com.docdoku.plm.api.services.PartsApi;
+import com.docdoku.plm.api.services.ProductsApi;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a product structure of configurable size and shape.
+ *
+ * The tree is planned first, breadth first: every part above the last level gets up to fan-out
+ * children until the part count is reached. Parts are then created level by level from the
+ * leaves up, all parts of a level in parallel, so that a parent is only linked once all its
+ * children exist. The root part becomes a product (configuration item).
+ *
+ * A generator only holds its settings, it can be shared by the loaders of several workspaces.
+ */
+public class BomGenerator {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final String JOURNAL_KIND = "part";
+    private static final int CONFLICT = 409;
+
+    static class PlannedPart {
+        private final int index;
+        private final int level;
+        private final List<PlannedPart> children = new ArrayList<>();
+        private final List<Boolean> optional = new ArrayList<>();
+        private final List<Boolean> substituted = new ArrayList<>();
+
+        PlannedPart(int index, int level) {
+            this.index = index;
+            this.level = level;
+        }
+    }
+
+    private String prefix = "GEN";
+    private int partCount = 1000;
+    private int depth = 4;
+    private int fanOut = 10;
+    private double substituteRatio = 0.1;
+    private double optionalRatio = 0.2;
+    private int concurrency = 8;
+    private String leafGeometry;
+    private long leafGeometrySize;
+    private long seed = 0;
+
+    /**
+     * Part numbers are made of this prefix and the part index, the root is prefix-000000
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public void setPartCount(int partCount) {
+        this.partCount = partCount;
+    }
+
+    /**
+     * Number of levels of the tree, the root being the first one
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Share of usage links getting a substitute, the substitute being a sibling of the component
+     */
+    public void setSubstituteRatio(double substituteRatio) {
+        this.substituteRatio = substituteRatio;
+    }
+
+    public void setOptionalRatio(double optionalRatio) {
+        this.optionalRatio = optionalRatio;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Resource uploaded as native CAD file of every leaf, none if null
+     */
+    public void setLeafGeometry(String leafGeometry) {
+        this.leafGeometry = leafGeometry;
+    }
+
+    /**
+     * Size in bytes of a geometry generated for every leaf instead of a resource, none if 0
+     */
+    public void setLeafGeometrySize(long leafGeometrySize) {
+        this.leafGeometrySize = leafGeometrySize;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void generate(ApiClient client, String workspaceId) throws ApiException, IOException, InterruptedException {
+        generate(client, workspaceId, new UploadAccounting(), null);
+    }
+
+    /**
+     * @param accounting accounting of the run uploads, shared with the other upload stages
+     * @param journal journal of the load, entities it holds are not created again, none if null
+     */
+    public void generate(final ApiClient client, final String workspaceId, UploadAccounting accounting,
+                         final LoadJournal journal) throws ApiException, IOException, InterruptedException {
+        List<List<PlannedPart>> levels = plan();
+        int planned = 0;
+        for (List<PlannedPart> level : levels) {
+            planned += level.size();
+        }
+        if (planned < partCount) {
+            LOGGER.warning("A tree of depth " + depth + " and fan-out " + fanOut + " holds at most " + planned
+                    + " parts, generating " + planned + " instead of " + partCount);
+        }
+
+        LOGGER.info("Generating " + planned + " parts on " + levels.size() + " levels...");
+
+        final StreamingUploader uploader = new StreamingUploader(client, accounting);
+        final CreationTemplate parts = new CreationTemplate(workspaceId)
+                .withVersion("A")
+                .withDescription("Part generated with sample loader");
+
+        try (TaskBatch batch = new TaskBatch("bom", concurrency)) {
+            for (int level = levels.size() - 1; level >= 0; level--) {
+                for (final PlannedPart part : levels.get(level)) {
+                    final String number = number(part);
+                    if (journal != null && journal.isCreated(JOURNAL_KIND, number)) {
+                        continue;
+                    }
+                    final BinarySource geometry = part.children.isEmpty() ? leafGeometry(part) : null;
+                    batch.submit(number, new TaskBatch.Task() {
+                        @Override
+                        public void run() throws ApiException, IOException {
+                            createPart(client, uploader, workspaceId, parts, part, geometry, journal);
+                            if (journal != null) {
+                                journal.created(JOURNAL_KIND, number);
+                            }
+                        }
+                    });
+                }
+                batch.awaitOrThrow();
+                LOGGER.info("Level " + level + " created (" + levels.get(level).size() + " parts)");
+            }
+        }
+
+        ConfigurationItemDTO product = new ConfigurationItemDTO();
+        product.setWorkspaceId(workspaceId);
+        product.setId(number(levels.get(0).get(0)));
+        product.setDesignItemNumber(product.getId());
+        product.setDescription("Generated structure of " + planned + " parts");
+        try {
+            new ProductsApi(client).createConfigurationItem(workspaceId, product);
+        } catch (ApiException e) {
+            if (journal == null || !journal.isResumed() || e.getCode() != CONFLICT) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Plans the tree, levels from the root down
+     */
+    List<List<PlannedPart>> plan() {
+        if (partCount < 1 || depth < 1 || fanOut < 1) {
+            throw new IllegalArgumentException("Part count, depth and fan-out must be at least 1");
+        }
+
+        Random random = new Random(seed);
+        List<List<PlannedPart>> levels = new ArrayList<>();
+        Deque<PlannedPart> queue = new ArrayDeque<>();
+
+        PlannedPart root = new PlannedPart(0, 0);
+        levels.add(new ArrayList<>(Collections.singletonList(root)));
+        queue.add(root);
+        int count = 1;
+
+        while (!queue.isEmpty() && count < partCount) {
+            PlannedPart parent = queue.poll();
+            if (parent.level >= depth - 1) {
+                break;
+            }
+            for (int i = 0; i < fanOut && count < partCount; i++) {
+                PlannedPart child = new PlannedPart(count++, parent.level + 1);
+                parent.children.add(child);
+                parent.optional.add(random.nextDouble() < optionalRatio);
+                parent.substituted.add(random.nextDouble() < substituteRatio);
+                if (levels.size() <= child.level) {
+                    levels.add(new ArrayList<PlannedPart>());
+                }
+                levels.get(child.level).add(child);
+                queue.add(child);
+            }
+        }
+
+        return levels;
+    }
+
+    private void createPart(ApiClient client, StreamingUploader uploader, String workspaceId, CreationTemplate parts,
+                            PlannedPart part, BinarySource geometry, LoadJournal journal) throws ApiException {
+        String number = number(part);
+
+        PartCreationDTO partCreationDTO = parts.part(number,
+                part.children.isEmpty() ? "Generated part " + part.index : "Generated assembly " + part.index);
+
+        PartRevisionDTO partRevision;
+        try {
+            partRevision = new PartsApi(client).createNewPart(workspaceId, partCreationDTO);
+        } catch (ApiException e) {
+            // Created by the interrupted run after its last journal sync
+            if (journal == null || !journal.isResumed() || e.getCode() != CONFLICT) {
+                throw e;
+            }
+            partRevision = new PartApi(client).getPartRevision(workspaceId, number, "A");
+            if (partRevision.getCheckOutUser() == null) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Part " + number + " already checked in, skipping");
+                }
+                return;
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Part " + number + " already exists, completing it");
+            }
+        }
+
+        // A part left checked out by the interrupted run only gets the links or file it lacks
+        PartIterationDTO lastIteration = LastIterationHelper.getLastIteration(partRevision);
+
+        if (!part.children.isEmpty()
+                && (lastIteration.getComponents() == null || lastIteration.getComponents().isEmpty())) {
+            lastIteration.setComponents(links(part));
+            lastIteration.setIterationNote("Generated assembly");
+            new PartsApi(client).updatePartIteration(workspaceId, number, "A", 1, lastIteration);
+        }
+
+        if (geometry != null && lastIteration.getNativeCADFile() == null) {
+            uploader.uploadNativeCADFile(workspaceId, number, "A", 1, geometry);
+        }
+
+        new PartApi(client).checkIn(workspaceId, number, "A");
+    }
+
+    private BinarySource leafGeometry(PlannedPart part) {
+        if (leafGeometrySize > 0) {
+            return BinarySources.generatedGeometry(number(part) + ".obj", leafGeometrySize, seed + part.index);
+        }
+        return leafGeometry != null ? BinarySources.resource(leafGeometry) : null;
+    }
+
+    /**
+     * Builds the usage links of an assembly to its children, none for a leaf
+     */
+    List<PartUsageLinkDTO> links(PlannedPart parent) {
+        List<PartUsageLinkDTO> links = new ArrayList<>();
+        int size = parent.children.size();
+
+        for (int i = 0; i < size; i++) {
+            PartUsageLinkDTO link = new PartUsageLinkDTO();
+            link.setComponent(component(parent.children.get(i)));
+            link.setAmount(1.0);
+            link.setReferenceDescription("Usage " + (i + 1));
+            link.setOptional(parent.optional.get(i));
+            link.setCadInstances(Collections.singletonList(cadInstance(i)));
+
+            if (parent.substituted.get(i) && size > 1) {
+                PartSubstituteLinkDTO substitute = new PartSubstituteLinkDTO();
+                substitute.setSubstitute(component(parent.children.get((i + 1) % size)));
+                substitute.setAmount(1.0);
+                substitute.setCadInstances(Collections.singletonList(cadInstance(i)));
+                link.setSubstitutes(Collections.singletonList(substitute));
+            }
+
+            links.add(link);
+        }
+
+        return links;
+    }
+
+    private ComponentDTO component(PlannedPart part) {
+        ComponentDTO component = new ComponentDTO();
+        component.setNumber(number(part));
+        component.setVersion("A");
+        return component;
+    }
+
+    private CADInstanceDTO cadInstance(int position) {
+        CADInstanceDTO cadInstance = new CADInstanceDTO();
+        cadInstance.setRx(0.0);
+        cadInstance.setRy(0.0);
+        cadInstance.setRz(0.0);
+        cadInstance.setTx(position * 20.0);
+        cadInstance.setTy(0.0);
+        cadInstance.setTz(0.0);
+        return cadInstance;
+    }
+
+    private String number(PlannedPart part) {
+        return String.format("%s-%06d", prefix, part.index);
+    }
+}
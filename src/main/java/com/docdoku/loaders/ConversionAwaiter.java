@@ -0,0 +1,164 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.ConversionDTO;
+import com.docdoku.plm.api.services.PartApi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Waits for the server side conversion of uploaded native CAD files.
+ *
+ * Every expected part iteration is polled until its conversion is no longer pending; the
+ * delay between polls grows while nothing changes and goes back to its minimum as soon as
+ * a conversion ends. Each part is handed to the listener as soon as it is ready, parts still
+ * pending at the deadline are handed over anyway. A part whose conversion is still unknown to
+ * the server a while after its upload, as when the server has no converter for it, is handed
+ * over without waiting for the deadline.
+ *
+ * Parts are expected by the upload pipeline as their upload ends, so that latencies do not
+ * include the wait for the other uploads.
+ */
+public class ConversionAwaiter {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final long MIN_POLL_DELAY = 100;
+    private static final long MAX_POLL_DELAY = 5000;
+    private static final double BACKOFF_FACTOR = 1.5;
+    // How long after its upload a conversion may be unknown to the server before it is given up
+    private static final long NOT_FOUND_GRACE = 10000;
+
+    /**
+     * Called once per expected part iteration, when its conversion has ended or the deadline is reached
+     */
+    public interface Listener {
+        void converted(String partNumber, String version, int iteration) throws ApiException, IOException;
+    }
+
+    private static class Expected {
+        private final String partNumber;
+        private final String version;
+        private final int iteration;
+        private final String fileName;
+        private final long start;
+
+        Expected(String partNumber, String version, int iteration, String fileName) {
+            this.partNumber = partNumber;
+            this.version = version;
+            this.iteration = iteration;
+            this.fileName = fileName;
+            this.start = System.nanoTime();
+        }
+    }
+
+    private final PartApi partApi;
+    private final String workspaceId;
+    private final long timeoutMillis;
+    private final List<Expected> pending = new ArrayList<>();
+
+    public ConversionAwaiter(ApiClient client, String workspaceId, long timeoutMillis) {
+        this.partApi = new PartApi(client);
+        this.workspaceId = workspaceId;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Registers a part iteration whose native CAD file has just been uploaded, its conversion latency is measured from now
+     */
+    public synchronized void expect(String partNumber, String version, int iteration, String fileName) {
+        pending.add(new Expected(partNumber, version, iteration, fileName));
+    }
+
+    public synchronized void await(Listener listener) throws ApiException, IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long notFoundGrace = TimeUnit.MILLISECONDS.toNanos(Math.min(NOT_FOUND_GRACE, timeoutMillis));
+        long delay = MIN_POLL_DELAY;
+
+        while (!pending.isEmpty()) {
+            boolean progress = false;
+
+            for (Iterator<Expected> iterator = pending.iterator(); iterator.hasNext(); ) {
+                Expected expected = iterator.next();
+                ConversionDTO conversion = getConversion(expected);
+
+                if (conversion == null && System.nanoTime() - expected.start >= notFoundGrace) {
+                    LOGGER.warning("No conversion of " + expected.fileName + " for " + expected.partNumber
+                            + " registered " + TimeUnit.NANOSECONDS.toMillis(notFoundGrace)
+                            + " ms after its upload, going on without it");
+                    iterator.remove();
+                    progress = true;
+                    listener.converted(expected.partNumber, expected.version, expected.iteration);
+                } else if (conversion != null && !Boolean.TRUE.equals(conversion.getPending())) {
+                    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - expected.start);
+                    if (Boolean.TRUE.equals(conversion.getSucceed())) {
+                        LOGGER.info("Conversion of " + expected.fileName + " for " + expected.partNumber
+                                + " done in " + latency + " ms");
+                    } else {
+                        LOGGER.warning("Conversion of " + expected.fileName + " for " + expected.partNumber
+                                + " failed after " + latency + " ms");
+                    }
+                    iterator.remove();
+                    progress = true;
+                    listener.converted(expected.partNumber, expected.version, expected.iteration);
+                }
+            }
+
+            if (pending.isEmpty()) {
+                break;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                for (Expected expected : pending) {
+                    LOGGER.warning("Conversion of " + expected.fileName + " for " + expected.partNumber
+                            + " still pending after " + timeoutMillis + " ms, going on anyway");
+                    listener.converted(expected.partNumber, expected.version, expected.iteration);
+                }
+                pending.clear();
+                break;
+            }
+
+            delay = progress ? MIN_POLL_DELAY : Math.min(MAX_POLL_DELAY, (long) (delay * BACKOFF_FACTOR));
+            Thread.sleep(Math.min(delay, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+        }
+    }
+
+    private ConversionDTO getConversion(Expected expected) throws ApiException {
+        try {
+            return partApi.getConversionStatus(workspaceId, expected.partNumber, expected.version, expected.iteration);
+        } catch (ApiException e) {
+            // The conversion may not be registered yet right after the upload
+            if (e.getCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.models.ACLDTO;
+import com.docdoku.plm.api.models.ACLEntryDTO;
+import com.docdoku.plm.api.models.DocumentCreationDTO;
+import com.docdoku.plm.api.models.PartCreationDTO;
+import com.docdoku.plm.api.models.RoleMappingDTO;
+import com.docdoku.plm.api.models.WorkflowModelDTO;
+
+import java.util.List;
+
+/**
+ * Fields shared by the parts or documents a phase creates: template, version, description, ACL,
+ * workflow model and role mapping. A template is never modified, the with methods return a new one.
+ *
+ * Every creation derives its own DTO from the template, so creations sharing it may run
+ * concurrently. Derived DTOs share the template's ACL and role mapping, which must not be modified.
+ */
+public final class CreationTemplate {
+
+    private final String workspaceId;
+    private final String templateId;
+    private final String version;
+    private final String description;
+    private final ACLDTO acl;
+    private final String workflowModelId;
+    private final List<RoleMappingDTO> roleMapping;
+
+    public CreationTemplate(String workspaceId) {
+        this(workspaceId, null, null, null, null, null, null);
+    }
+
+    private CreationTemplate(String workspaceId, String templateId, String version, String description, ACLDTO acl,
+                             String workflowModelId, List<RoleMappingDTO> roleMapping) {
+        this.workspaceId = workspaceId;
+        this.templateId = templateId;
+        this.version = version;
+        this.description = description;
+        this.acl = acl;
+        this.workflowModelId = workflowModelId;
+        this.roleMapping = roleMapping;
+    }
+
+    /**
+     * @param templateId part or document template of the created entities, none if null
+     */
+    public CreationTemplate withTemplateId(String templateId) {
+        return new CreationTemplate(workspaceId, templateId, version, description, acl, workflowModelId, roleMapping);
+    }
+
+    /**
+     * @param version version of the created parts, the server's first version if null
+     */
+    public CreationTemplate withVersion(String version) {
+        return new CreationTemplate(workspaceId, templateId, version, description, acl, workflowModelId, roleMapping);
+    }
+
+    public CreationTemplate withDescription(String description) {
+        return new CreationTemplate(workspaceId, templateId, version, description, acl, workflowModelId, roleMapping);
+    }
+
+    /**
+     * @param groupEntries ACL entries of the groups, shared and not copied
+     */
+    public CreationTemplate withAcl(List<ACLEntryDTO> groupEntries) {
+        ACLDTO acl = new ACLDTO();
+        acl.setGroupEntries(groupEntries);
+        return new CreationTemplate(workspaceId, templateId, version, description, acl, workflowModelId, roleMapping);
+    }
+
+    /**
+     * @param roleMapping role mapping of the workflow model, shared and not copied
+     */
+    public CreationTemplate withWorkflow(WorkflowModelDTO workflowModel, List<RoleMappingDTO> roleMapping) {
+        return new CreationTemplate(workspaceId, templateId, version, description, acl, workflowModel.getId(), roleMapping);
+    }
+
+    public PartCreationDTO part(String number, String name) {
+        PartCreationDTO part = new PartCreationDTO();
+        part.setWorkspaceId(workspaceId);
+        part.setNumber(number);
+        part.setName(name);
+        part.setTemplateId(templateId);
+        part.setVersion(version);
+        part.setDescription(description);
+        part.setAcl(acl);
+        part.setWorkflowModelId(workflowModelId);
+        part.setRoleMapping(roleMapping);
+        return part;
+    }
+
+    public DocumentCreationDTO document(String reference, String title) {
+        DocumentCreationDTO document = new DocumentCreationDTO();
+        document.setWorkspaceId(workspaceId);
+        document.setReference(reference);
+        document.setTitle(title);
+        document.setTemplateId(templateId);
+        document.setDescription(description);
+        document.setAcl(acl);
+        document.setWorkflowModelId(workflowModelId);
+        document.setRoleMapping(roleMapping);
+        return document;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.DocumentRevisionDTO;
+import com.docdoku.plm.api.services.DocumentApi;
+import com.docdoku.plm.api.services.FoldersApi;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a large number of documents spread over the sample templates and folders.
+ *
+ * Documents are produced one at a time while they are sent, so memory does not depend on
+ * how many are generated. Creation and upload/check-in are two stages with their own bounded
+ * worker pools: a created document is handed to the upload stage, and a full upload stage
+ * holds the creation stage back, which in turn holds the producer back.
+ */
+public class DocumentGenerator {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final int PROGRESS_STEP = 1000;
+    private static final String JOURNAL_KIND = "document";
+    private static final int CONFLICT = 409;
+
+    /**
+     * Sample template, with the folder and the file used for its generated documents
+     */
+    private static class TemplateUsage {
+        private final String templateId;
+        private final String mask;
+        private final String folder;
+        private final String resourceName;
+
+        TemplateUsage(String templateId, String mask, String folder, String resourceName) {
+            this.templateId = templateId;
+            this.mask = mask;
+            this.folder = folder;
+            this.resourceName = resourceName;
+        }
+    }
+
+    private static final TemplateUsage[] TEMPLATES = {
+            new TemplateUsage("Letter", "LETTER-###", "Letters", "letter-001.docx"),
+            new TemplateUsage("Invoice", "INVOICE-###", "Invoices", "invoice-001.xlsx"),
+            new TemplateUsage("UserManuals", "USER-MAN-###", "Documentation", "user-man-001.txt"),
+            new TemplateUsage("APIDocuments", "API-###", "APIManuals", "API-001"),
+            new TemplateUsage("OfficeDocuments", "OFFICE-###", "OfficeDocuments", "test_officeWriter.odt"),
+            new TemplateUsage("SPREADSHEET", "SPREADSHEET-###", "OfficeDocuments", "spreadsheet.ods")
+    };
+
+    private long documentCount = 1000;
+    private long firstNumber = 100;
+    private int concurrency = 8;
+
+    public void setDocumentCount(long documentCount) {
+        this.documentCount = documentCount;
+    }
+
+    /**
+     * Number given to the first generated document of each template, lower numbers are left
+     * to the hand made sample documents
+     */
+    public void setFirstNumber(long firstNumber) {
+        this.firstNumber = firstNumber;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void generate(ApiClient client, String workspaceId) throws ApiException, IOException, InterruptedException {
+        generate(client, workspaceId, new UploadAccounting(), null);
+    }
+
+    /**
+     * @param accounting accounting of the run uploads, shared with the other upload stages
+     * @param journal journal of the load, documents it holds are not created again, none if null
+     */
+    public void generate(final ApiClient client, final String workspaceId, UploadAccounting accounting,
+                         final LoadJournal journal) throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Generating " + documentCount + " documents...");
+
+        final StreamingUploader uploader = new StreamingUploader(client, accounting);
+        CreationTemplate documents = new CreationTemplate(workspaceId).withDescription("Document generated with sample loader");
+        final CreationTemplate[] templates = new CreationTemplate[TEMPLATES.length];
+        for (int i = 0; i < TEMPLATES.length; i++) {
+            templates[i] = documents.withTemplateId(TEMPLATES[i].templateId);
+        }
+        final AtomicLong done = new AtomicLong();
+
+        try (final TaskBatch uploads = new TaskBatch("document-uploads", concurrency);
+             TaskBatch creations = new TaskBatch("document-creations", concurrency)) {
+
+            for (long i = 0; i < documentCount && !creations.hasFailures() && !uploads.hasFailures(); i++) {
+                final int templateIndex = (int) (i % TEMPLATES.length);
+                final TemplateUsage template = TEMPLATES[templateIndex];
+                final String reference = reference(template.mask, firstNumber + i / TEMPLATES.length);
+                if (journal != null && journal.isCreated(JOURNAL_KIND, reference)) {
+                    continue;
+                }
+
+                creations.submit(reference, new TaskBatch.Task() {
+                    @Override
+                    public void run() throws ApiException, IOException, InterruptedException {
+                        if (!createDocument(client, workspaceId, templates[templateIndex], template, reference, journal)) {
+                            journal.created(JOURNAL_KIND, reference);
+                            return;
+                        }
+
+                        uploads.submit(reference, new TaskBatch.Task() {
+                            @Override
+                            public void run() throws ApiException, IOException {
+                                uploader.uploadDocumentFile(workspaceId, reference, "A", 1,
+                                        BinarySources.resource(template.resourceName));
+                                new DocumentApi(client).checkInDocument(workspaceId, reference, "A");
+                                if (journal != null) {
+                                    journal.created(JOURNAL_KIND, reference);
+                                }
+
+                                long count = done.incrementAndGet();
+                                if (count % PROGRESS_STEP == 0) {
+                                    LOGGER.info(count + " documents generated");
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+
+            creations.awaitOrThrow();
+            uploads.awaitOrThrow();
+        }
+
+        LOGGER.info(done.get() + " documents generated");
+    }
+
+    /**
+     * Creates the document, returns false if a resumed load finds it already checked in. A document left
+     * checked out by the interrupted run goes on to the upload stage, which replaces its file if it has one.
+     */
+    private boolean createDocument(ApiClient client, String workspaceId, CreationTemplate creation, TemplateUsage template,
+                                   String reference, LoadJournal journal) throws ApiException {
+        try {
+            new FoldersApi(client).createDocumentMasterInFolder(workspaceId,
+                    creation.document(reference, "Generated " + template.templateId + " " + reference),
+                    workspaceId + ":" + template.folder);
+            return true;
+        } catch (ApiException e) {
+            // Created by the interrupted run after its last journal sync
+            if (journal == null || !journal.isResumed() || e.getCode() != CONFLICT) {
+                throw e;
+            }
+            DocumentRevisionDTO document = new DocumentApi(client).getDocumentRevision(workspaceId, reference, "A");
+            boolean checkedIn = document.getCheckOutUser() == null;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Document " + reference + " already exists, "
+                        + (checkedIn ? "skipping" : "completing it"));
+            }
+            return !checkedIn;
+        }
+    }
+
+    /**
+     * Replaces the '#' of the mask with the zero padded number, the number is not truncated if
+     * it has more digits than the mask
+     */
+    static String reference(String mask, long number) {
+        int start = mask.indexOf('#');
+        int end = mask.lastIndexOf('#') + 1;
+        String digits = Long.toString(number);
+        StringBuilder reference = new StringBuilder(mask.length() + digits.length());
+        reference.append(mask, 0, start);
+        for (int i = digits.length(); i < end - start; i++) {
+            reference.append('0');
+        }
+        reference.append(digits).append(mask, end, mask.length());
+        return reference.toString();
+    }
+}
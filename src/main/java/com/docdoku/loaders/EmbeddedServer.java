@@ -0,0 +1,208 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process stand-in for a DocDokuPLM server, to run the loader without an application server.
+ *
+ * It answers the REST calls of the loader from memory and swallows binary uploads. Each call
+ * can be delayed and can fail with a 503, to measure the loader and exercise its retries.
+ * Answers are good enough for the loader to go on, they do not check what a server checks.
+ */
+public class EmbeddedServer implements AutoCloseable {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    /**
+     * Host given on the command line to load into an embedded server
+     */
+    public static final String HOST = "embedded";
+
+    private static final String API_PATH = "/api";
+    private static final String FILES_SEGMENT = "files";
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final EmbeddedStore store = new EmbeddedStore();
+    private long latency;
+    private double errorRate;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+
+    /**
+     * Sets the mean time in milliseconds each call takes, calls take between half and one and a half of it
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Sets the share of calls answered with a 503, between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Starts the server on a free local port and returns its url
+     */
+    public String start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool(new NamedThreadFactory("sample-loader-embedded"));
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Embedded server failed on " + exchange.getRequestURI(), e);
+                    send(exchange, new EmbeddedStore.Reply(500, "{\"message\":\"" + e + "\"}"));
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        LOGGER.info("Embedded server listening on " + url + " (latency " + latency + " ms, error rate " + errorRate + ")");
+        return url;
+    }
+
+    @Override
+    public void close() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        LOGGER.info("Embedded server stopped : " + requests.get() + " calls, " + injectedErrors.get()
+                + " injected errors, " + uploadedBytes.get() + " bytes uploaded");
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith(API_PATH + "/")) {
+            path = path.substring(API_PATH.length());
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+
+        // Uploads are read and dropped, other bodies are small JSON documents
+        boolean upload = !segments.isEmpty() && FILES_SEGMENT.equals(segments.get(0));
+        String body = upload ? null : readBody(exchange.getRequestBody());
+        if (upload) {
+            uploadedBytes.addAndGet(skipBody(exchange.getRequestBody()));
+        }
+
+        pause();
+
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            send(exchange, new EmbeddedStore.Reply(SERVICE_UNAVAILABLE, "{\"message\":\"Injected error\"}"));
+            return;
+        }
+
+        if (upload) {
+            send(exchange, new EmbeddedStore.Reply(200, null));
+            return;
+        }
+        send(exchange, store.handle(exchange.getRequestMethod(), segments, body));
+    }
+
+    private void pause() {
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency / 2 + ThreadLocalRandom.current().nextLong(latency + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static long skipBody(InputStream in) throws IOException {
+        long length = 0;
+        byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            length += read;
+        }
+        return length;
+    }
+
+    private static void send(HttpExchange exchange, EmbeddedStore.Reply reply) throws IOException {
+        for (Map.Entry<String, String> header : reply.headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        if (reply.body == null) {
+            exchange.sendResponseHeaders(reply.status == 200 ? 204 : reply.status, -1);
+            return;
+        }
+        byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(reply.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.google.gson.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory state and routing of the embedded server.
+ *
+ * Routing is generic rather than a copy of the server resources: under a workspace, the leading
+ * lower case segments of a path name a collection, and the next segment an item of it. Created
+ * items are stored as posted, with a numeric id if they have none, lists and items are answered
+ * from the store, and updates echo the item. Parts are modelled closer, with their iterations and
+ * versions, since the loader reads them back.
+ *
+ * Calls on different collections run in parallel. A call locks the collection it reads or
+ * changes, so that items are not changed while they are written out; the parts collection of a
+ * workspace also guards its latest revisions, and is locked after any other collection.
+ */
+class EmbeddedStore {
+
+    static class Reply {
+        final int status;
+        final String body;
+        final Map<String, String> headers = new HashMap<>();
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static final Reply NO_CONTENT = new Reply(204, null);
+    private static final Reply NOT_FOUND = new Reply(404, "{\"message\":\"Not found\"}");
+
+    private final Gson gson = new Gson();
+    private final JsonParser parser = new JsonParser();
+    private final ConcurrentMap<String, Map<String, JsonObject>> collections = new ConcurrentHashMap<>();
+    // Latest revision of each part number, by workspace, so that reading a structure does not scan the store
+    private final ConcurrentMap<String, Map<String, JsonObject>> latestRevisions = new ConcurrentHashMap<>();
+    // Replaced, never changed, once set
+    private volatile JsonObject organization;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    Reply handle(String method, List<String> segments, String body) {
+        JsonElement json = body == null || body.trim().isEmpty() ? new JsonObject() : parser.parse(body);
+
+        if (segments.isEmpty()) {
+            return NOT_FOUND;
+        }
+        switch (segments.get(0)) {
+            case "languages":
+                return reply("[\"en\",\"fr\"]");
+            case "auth":
+                return login(json);
+            case "organizations":
+                return organization(method, json);
+            case "workspaces":
+                if (segments.size() == 1) {
+                    return collection("workspaces", method, segments.subList(1, 1), json);
+                }
+                return workspace(method, segments.get(1), segments.subList(2, segments.size()), json);
+            default:
+                return reply(json);
+        }
+    }
+
+    private Reply login(JsonElement json) {
+        JsonObject credentials = json.getAsJsonObject();
+        String login = credentials.has("login") ? credentials.get("login").getAsString() : "guest";
+
+        JsonObject account = new JsonObject();
+        account.addProperty("login", login);
+        account.addProperty("name", login);
+        account.addProperty("email", login + "@localhost");
+        account.addProperty("language", "en");
+
+        Reply reply = reply(account);
+        reply.headers.put("jwt", "embedded-" + login);
+        return reply;
+    }
+
+    private Reply organization(String method, JsonElement json) {
+        switch (method) {
+            case "GET":
+                return organization != null ? reply(organization) : NO_CONTENT;
+            case "DELETE":
+                organization = null;
+                return NO_CONTENT;
+            case "POST":
+                organization = json.getAsJsonObject();
+                return reply(organization);
+            default:
+                return reply(json);
+        }
+    }
+
+    private Reply workspace(String method, String workspaceId, List<String> path, JsonElement json) {
+        Map<String, JsonObject> workspaces = items("workspaces");
+        synchronized (workspaces) {
+            JsonObject workspace = workspaces.get(workspaceId);
+            if (workspace == null) {
+                return NOT_FOUND;
+            }
+            if (path.isEmpty()) {
+                return reply(workspace);
+            }
+        }
+        if ("conversion".equals(path.get(path.size() - 1))) {
+            return reply("{\"pending\":false,\"succeed\":true}");
+        }
+
+        int length = 0;
+        while (length < path.size() && path.get(length).matches("[a-z][a-z-]*")) {
+            length++;
+        }
+        String collection = workspaceId + "/" + join(path.subList(0, Math.max(length, 1)));
+        List<String> rest = path.subList(Math.max(length, 1), path.size());
+
+        if (collection.endsWith("/parts")) {
+            return parts(method, workspaceId, collection, rest, json);
+        }
+        if (collection.endsWith("/products") && rest.size() >= 2 && "filter".equals(rest.get(1))) {
+            return structure(workspaceId, collection, rest.get(0));
+        }
+        return collection(collection, method, rest, json);
+    }
+
+    private Reply collection(String collection, String method, List<String> rest, JsonElement json) {
+        Map<String, JsonObject> items = items(collection);
+
+        synchronized (items) {
+            if (rest.isEmpty()) {
+                switch (method) {
+                    case "GET":
+                        return reply(toArray(items.values()));
+                    case "POST":
+                        if (json.isJsonObject() && json.getAsJsonObject().has("tags")) {
+                            // Tag lists are created in one call
+                            for (JsonElement tag : json.getAsJsonObject().getAsJsonArray("tags")) {
+                                store(items, tag.getAsJsonObject());
+                            }
+                            return reply(json);
+                        }
+                        return reply(store(items, json.getAsJsonObject()));
+                    default:
+                        return reply(json);
+                }
+            }
+
+            String key = rest.get(0);
+            JsonObject item = items.get(key);
+            String last = rest.get(rest.size() - 1);
+
+            switch (method) {
+                case "GET":
+                    if (rest.size() > 1 && last.matches("[a-z-]+s")) {
+                        // Sub list of the item, such as the baselines of a product
+                        return reply(toArray(referencing(items.values(), key)));
+                    }
+                    if (item == null && collection.contains("/")) {
+                        String workspaceId = collection.substring(0, collection.indexOf('/'));
+                        synchronized (parts(workspaceId)) {
+                            item = latest(workspaceId, key);
+                            return item != null ? reply(item) : NOT_FOUND;
+                        }
+                    }
+                    return item != null ? reply(item) : NOT_FOUND;
+                case "POST":
+                    if (item == null && json.isJsonObject()) {
+                        // Creation under a parent, such as a sub folder
+                        return reply(store(items, json.getAsJsonObject()));
+                    }
+                    return reply(item != null ? item : json);
+                case "PUT":
+                    if (item != null && rest.size() == 1 && json.isJsonObject()) {
+                        merge(item, json.getAsJsonObject());
+                    }
+                    return reply(item != null ? item : json);
+                case "DELETE":
+                    if (rest.size() == 1) {
+                        items.remove(key);
+                    }
+                    return NO_CONTENT;
+                default:
+                    return reply(json);
+            }
+        }
+    }
+
+    private Reply parts(String method, String workspaceId, String collection, List<String> rest, JsonElement json) {
+        Map<String, JsonObject> parts = items(collection);
+
+        synchronized (parts) {
+            if (rest.isEmpty()) {
+                if ("POST".equals(method)) {
+                    JsonObject creation = json.getAsJsonObject();
+                    String version = creation.has("version") ? creation.get("version").getAsString() : "A";
+                    return reply(createRevision(parts, workspaceId, creation, version, new JsonArray()));
+                }
+                return reply(toArray(parts.values()));
+            }
+
+            JsonObject revision = parts.get(rest.get(0));
+            if (revision == null && "GET".equals(method)) {
+                // Latest revision of a part number
+                revision = latest(workspaceId, rest.get(0));
+            }
+            if (revision == null) {
+                return NOT_FOUND;
+            }
+            if (rest.size() == 1) {
+                if ("DELETE".equals(method)) {
+                    parts.remove(rest.get(0));
+                    revisionRemoved(workspaceId, parts, revision);
+                    return NO_CONTENT;
+                }
+                if ("PUT".equals(method) && json.isJsonObject()) {
+                    merge(revision, json.getAsJsonObject());
+                }
+                return reply(revision);
+            }
+
+            JsonArray iterations = revision.getAsJsonArray("partIterations");
+            JsonObject lastIteration = iterations.get(iterations.size() - 1).getAsJsonObject();
+
+            switch (rest.get(1)) {
+                case "iterations":
+                    if (rest.size() < 3) {
+                        return reply(iterations);
+                    }
+                    int index = Integer.parseInt(rest.get(2)) - 1;
+                    if (index < 0 || index >= iterations.size()) {
+                        return NOT_FOUND;
+                    }
+                    JsonObject iteration = iterations.get(index).getAsJsonObject();
+                    if ("PUT".equals(method) && json.isJsonObject()) {
+                        merge(iteration, json.getAsJsonObject());
+                        iteration.addProperty("iteration", index + 1);
+                        identifyLinks(iteration);
+                        return reply(revision);
+                    }
+                    return reply(iteration);
+                case "checkout":
+                    JsonObject next = gson.fromJson(lastIteration, JsonObject.class);
+                    next.addProperty("iteration", iterations.size() + 1);
+                    iterations.add(next);
+                    return reply(revision);
+                case "newVersion":
+                    String number = revision.get("number").getAsString();
+                    JsonObject creation = json.isJsonObject() ? json.getAsJsonObject() : new JsonObject();
+                    creation.addProperty("number", number);
+                    JsonArray components = lastIteration.has("components")
+                            ? gson.fromJson(lastIteration.get("components"), JsonArray.class) : new JsonArray();
+                    String version = nextVersion(latest(workspaceId, number).get("version").getAsString());
+                    return reply(createRevision(parts, workspaceId, creation, version, components));
+                default:
+                    // Check in, release, effectivities... only the revision is expected back
+                    return reply(revision);
+            }
+        }
+    }
+
+    private JsonObject createRevision(Map<String, JsonObject> parts, String workspaceId, JsonObject creation,
+                                      String version, JsonArray components) {
+        String number = creation.get("number").getAsString();
+
+        JsonObject iteration = new JsonObject();
+        iteration.addProperty("workspaceId", workspaceId);
+        iteration.addProperty("number", number);
+        iteration.addProperty("version", version);
+        iteration.addProperty("iteration", 1);
+        iteration.add("components", components);
+        identifyLinks(iteration);
+
+        JsonObject revision = gson.fromJson(creation, JsonObject.class);
+        revision.addProperty("workspaceId", workspaceId);
+        revision.addProperty("version", version);
+        revision.addProperty("partKey", number + "-" + version);
+        JsonArray iterations = new JsonArray();
+        iterations.add(iteration);
+        revision.add("partIterations", iterations);
+
+        parts.put(number + "-" + version, revision);
+        Map<String, JsonObject> latest = latestRevisions(workspaceId);
+        if (!latest.containsKey(number) || isLater(revision, latest.get(number))) {
+            latest.put(number, revision);
+        }
+        return revision;
+    }
+
+    /**
+     * Falls back to the latest revision left in the collection when the latest one is deleted
+     */
+    private void revisionRemoved(String workspaceId, Map<String, JsonObject> parts, JsonObject revision) {
+        String number = revision.get("number").getAsString();
+        Map<String, JsonObject> latest = latestRevisions(workspaceId);
+        if (latest.get(number) != revision) {
+            return;
+        }
+        latest.remove(number);
+        for (JsonObject item : parts.values()) {
+            if (number.equals(item.get("number").getAsString())
+                    && (!latest.containsKey(number) || isLater(item, latest.get(number)))) {
+                latest.put(number, item);
+            }
+        }
+    }
+
+    private static boolean isLater(JsonObject revision, JsonObject other) {
+        return revision.get("version").getAsString().compareTo(other.get("version").getAsString()) > 0;
+    }
+
+    /**
+     * Product structure of a configuration item, built from the usage links of its last iterations
+     */
+    private Reply structure(String workspaceId, String collection, String configurationItemId) {
+        Map<String, JsonObject> products = items(collection);
+        String designItemNumber;
+        synchronized (products) {
+            JsonObject product = products.get(configurationItemId);
+            if (product == null) {
+                return NOT_FOUND;
+            }
+            designItemNumber = product.get("designItemNumber").getAsString();
+        }
+        synchronized (parts(workspaceId)) {
+            JsonObject root = component(workspaceId, designItemNumber, "-1", 0);
+            return root != null ? reply(root) : NOT_FOUND;
+        }
+    }
+
+    private JsonObject component(String workspaceId, String number, String path, int depth) {
+        JsonObject revision = latest(workspaceId, number);
+        if (revision == null) {
+            return null;
+        }
+        JsonArray iterations = revision.getAsJsonArray("partIterations");
+        JsonObject iteration = iterations.get(iterations.size() - 1).getAsJsonObject();
+
+        JsonObject component = new JsonObject();
+        component.addProperty("number", number);
+        component.addProperty("version", revision.get("version").getAsString());
+        component.addProperty("iteration", iteration.get("iteration").getAsInt());
+        component.addProperty("path", path);
+        component.addProperty("assembly", iteration.has("components") && iteration.getAsJsonArray("components").size() > 0);
+
+        JsonArray children = new JsonArray();
+        if (iteration.has("components") && depth < 64) {
+            for (JsonElement element : iteration.getAsJsonArray("components")) {
+                JsonObject link = element.getAsJsonObject();
+                if (!link.has("component")) {
+                    continue;
+                }
+                JsonObject child = component(workspaceId,
+                        link.getAsJsonObject("component").get("number").getAsString(),
+                        path + "-" + link.get("fullId").getAsString(), depth + 1);
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+        }
+        component.add("components", children);
+        return component;
+    }
+
+    /**
+     * Gives ids to the usage links of an iteration, the loader builds paths from them
+     */
+    private void identifyLinks(JsonObject iteration) {
+        if (!iteration.has("components") || !iteration.get("components").isJsonArray()) {
+            return;
+        }
+        for (JsonElement element : iteration.getAsJsonArray("components")) {
+            JsonObject link = element.getAsJsonObject();
+            if (!link.has("fullId")) {
+                long id = nextId.getAndIncrement();
+                link.addProperty("id", id);
+                link.addProperty("fullId", "u" + id);
+            }
+        }
+    }
+
+    /**
+     * Last revision of a part number in the workspace, its parts collection being locked
+     */
+    private JsonObject latest(String workspaceId, String number) {
+        Map<String, JsonObject> latest = latestRevisions.get(workspaceId);
+        return latest != null ? latest.get(number) : null;
+    }
+
+    private Map<String, JsonObject> latestRevisions(String workspaceId) {
+        Map<String, JsonObject> latest = latestRevisions.get(workspaceId);
+        if (latest == null) {
+            Map<String, JsonObject> created = new HashMap<>();
+            latest = latestRevisions.putIfAbsent(workspaceId, created);
+            if (latest == null) {
+                latest = created;
+            }
+        }
+        return latest;
+    }
+
+    private static String nextVersion(String version) {
+        char last = version.charAt(version.length() - 1);
+        return last < 'Z' ? version.substring(0, version.length() - 1) + (char) (last + 1) : version + "A";
+    }
+
+    private JsonObject store(Map<String, JsonObject> items, JsonObject item) {
+        if (!item.has("id") || item.get("id").isJsonNull()) {
+            item.addProperty("id", nextId.getAndIncrement());
+        }
+        items.put(item.get("id").getAsString(), item);
+        return item;
+    }
+
+    private List<JsonObject> referencing(Collection<JsonObject> items, String key) {
+        List<JsonObject> referencing = new ArrayList<>();
+        for (JsonObject item : items) {
+            for (Map.Entry<String, JsonElement> field : item.entrySet()) {
+                if (field.getValue().isJsonPrimitive() && key.equals(field.getValue().getAsString())) {
+                    referencing.add(item);
+                    break;
+                }
+            }
+        }
+        return referencing;
+    }
+
+    private void merge(JsonObject target, JsonObject source) {
+        for (Map.Entry<String, JsonElement> field : source.entrySet()) {
+            target.add(field.getKey(), field.getValue());
+        }
+    }
+
+    /**
+     * Items of a collection, to be read and changed with the collection locked
+     */
+    private Map<String, JsonObject> items(String collection) {
+        Map<String, JsonObject> items = collections.get(collection);
+        if (items == null) {
+            Map<String, JsonObject> created = new LinkedHashMap<>();
+            items = collections.putIfAbsent(collection, created);
+            if (items == null) {
+                items = created;
+            }
+        }
+        return items;
+    }
+
+    private Map<String, JsonObject> parts(String workspaceId) {
+        return items(workspaceId + "/parts");
+    }
+
+    private static JsonArray toArray(Collection<JsonObject> items) {
+        JsonArray array = new JsonArray();
+        for (JsonObject item : items) {
+            array.add(item);
+        }
+        return array;
+    }
+
+    private static String join(List<String> segments) {
+        StringBuilder joined = new StringBuilder();
+        for (String segment : segments) {
+            if (joined.length() > 0) {
+                joined.append('/');
+            }
+            joined.append(segment);
+        }
+        return joined.toString();
+    }
+
+    private Reply reply(JsonElement json) {
+        return new Reply(200, gson.toJson(json));
+    }
+
+    private static Reply reply(String json) {
+        return new Reply(200, json);
+    }
+}
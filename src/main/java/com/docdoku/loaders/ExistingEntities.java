@@ -0,0 +1,212 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.*;
+import com.docdoku.plm.api.services.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Entities a workspace already holds, listed in bulk before a load so that it only creates what is missing.
+ */
+public class ExistingEntities {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final int FORBIDDEN = 403;
+    private static final int NOT_FOUND = 404;
+    private static final int PAGE_SIZE = 500;
+    private static final int CONCURRENCY = 4;
+
+    public enum Kind {
+        USER, GROUP, FOLDER, TAG, DOCUMENT_TEMPLATE, PART_TEMPLATE, PART, WORKFLOW_MODEL, MILESTONE, REQUEST,
+        ISSUE, ORDER
+    }
+
+    private final boolean workspaceFound;
+    private final Map<Kind, Set<String>> keys = new EnumMap<>(Kind.class);
+
+    private ExistingEntities(boolean workspaceFound) {
+        this.workspaceFound = workspaceFound;
+        for (Kind kind : Kind.values()) {
+            keys.put(kind, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+        }
+    }
+
+    /**
+     * Nothing exists, every entity gets created
+     */
+    public static ExistingEntities none() {
+        return new ExistingEntities(false);
+    }
+
+    /**
+     * Lists what the workspace holds, one bulk call per kind. A workspace the caller cannot see is empty.
+     */
+    public static ExistingEntities fetch(final ApiClient client, final String workspaceId) throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Listing existing entities of " + workspaceId + "...");
+
+        List<UserGroupDTO> groups;
+        try {
+            groups = new WorkspacesApi(client).getGroups(workspaceId);
+        } catch (ApiException e) {
+            if (e.getCode() == FORBIDDEN || e.getCode() == NOT_FOUND) {
+                LOGGER.info("Workspace " + workspaceId + " not found, creating everything");
+                return none();
+            }
+            throw e;
+        }
+
+        final ExistingEntities existing = new ExistingEntities(true);
+        for (UserGroupDTO group : groups) {
+            existing.add(Kind.GROUP, group.getId());
+        }
+
+        try (TaskBatch batch = new TaskBatch("prefetch", CONCURRENCY)) {
+            batch.submit("users", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (UserDTO user : new WorkspacesApi(client).getUsersInWorkspace(workspaceId)) {
+                        existing.add(Kind.USER, user.getLogin());
+                    }
+                }
+            });
+            batch.submit("folders", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (FolderDTO folder : new FoldersApi(client).getRootFolders(workspaceId)) {
+                        existing.add(Kind.FOLDER, folder.getName());
+                    }
+                }
+            });
+            batch.submit("tags", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (TagDTO tag : new TagsApi(client).getTagsInWorkspace(workspaceId)) {
+                        existing.add(Kind.TAG, tag.getId());
+                    }
+                }
+            });
+            batch.submit("document templates", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (DocumentTemplateDTO template : new DocumentTemplatesApi(client).getDocumentMasterTemplates(workspaceId)) {
+                        existing.add(Kind.DOCUMENT_TEMPLATE, template.getId());
+                    }
+                }
+            });
+            batch.submit("part templates", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (PartTemplateDTO template : new PartTemplatesApi(client).getPartMasterTemplates(workspaceId)) {
+                        existing.add(Kind.PART_TEMPLATE, template.getId());
+                    }
+                }
+            });
+            batch.submit("parts", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    PartsApi partsApi = new PartsApi(client);
+                    for (int start = 0; ; start += PAGE_SIZE) {
+                        List<PartRevisionDTO> page = partsApi.getPartRevisions(workspaceId, start, PAGE_SIZE);
+                        for (PartRevisionDTO part : page) {
+                            existing.add(Kind.PART, partKey(part.getNumber(), part.getVersion()));
+                        }
+                        if (page.size() < PAGE_SIZE) {
+                            break;
+                        }
+                    }
+                }
+            });
+            batch.submit("workflow models", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (WorkflowModelDTO workflowModel : new WorkflowModelsApi(client).getWorkflowModelsInWorkspace(workspaceId)) {
+                        existing.add(Kind.WORKFLOW_MODEL, workflowModel.getId());
+                    }
+                }
+            });
+            // Milestones and change items are not keyed by their name, the server accepts the same name twice
+            batch.submit("milestones", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    for (MilestoneDTO milestone : new MilestonesApi(client).getMilestones(workspaceId)) {
+                        existing.add(Kind.MILESTONE, milestone.getTitle());
+                    }
+                }
+            });
+            batch.submit("change items", new TaskBatch.Task() {
+                @Override
+                public void run() throws ApiException {
+                    ChangeItemsApi changeItemsApi = new ChangeItemsApi(client);
+                    for (ChangeRequestDTO request : changeItemsApi.getRequests(workspaceId)) {
+                        existing.add(Kind.REQUEST, request.getName());
+                    }
+                    for (ChangeIssueDTO issue : changeItemsApi.getIssues(workspaceId)) {
+                        existing.add(Kind.ISSUE, issue.getName());
+                    }
+                    for (ChangeOrderDTO order : changeItemsApi.getOrders(workspaceId)) {
+                        existing.add(Kind.ORDER, order.getName());
+                    }
+                }
+            });
+            batch.awaitOrThrow();
+        }
+
+        StringBuilder summary = new StringBuilder("Found in " + workspaceId + " :");
+        for (Kind kind : Kind.values()) {
+            summary.append(' ').append(existing.keys.get(kind).size()).append(' ').append(kind.name().toLowerCase());
+        }
+        LOGGER.info(summary.toString());
+        return existing;
+    }
+
+    public boolean isWorkspaceFound() {
+        return workspaceFound;
+    }
+
+    public boolean contains(Kind kind, String key) {
+        return keys.get(kind).contains(key);
+    }
+
+    public boolean containsPart(String number, String version) {
+        return contains(Kind.PART, partKey(number, version));
+    }
+
+    private void add(Kind kind, String key) {
+        keys.get(kind).add(key);
+    }
+
+    private static String partKey(String number, String version) {
+        return number + "-" + version;
+    }
+}
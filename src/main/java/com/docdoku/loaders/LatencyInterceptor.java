@@ -0,0 +1,154 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.squareup.okhttp.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Times the HTTP calls of every API service into the load metrics, by endpoint.
+ *
+ * Placed after the retry interceptor, it times every attempt: a call retried on a 503 counts
+ * as one failed and one successful call. A call is timed until its response headers arrive.
+ * Bodies are counted as they go through, streamed uploads and chunked responses included:
+ * the request body as it is written, the response body as it is read, added once closed.
+ */
+class LatencyInterceptor implements Interceptor {
+
+    private final LoadMetrics metrics;
+
+    LatencyInterceptor(LoadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = RetryInterceptor.endpoint(request);
+        CountingRequestBody sent = null;
+        if (request.body() != null) {
+            sent = new CountingRequestBody(request.body());
+            request = request.newBuilder().method(request.method(), sent).build();
+        }
+        long start = System.nanoTime();
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            metrics.call(endpoint, System.nanoTime() - start, sent != null ? sent.length : 0, true);
+            throw e;
+        }
+
+        metrics.call(endpoint, System.nanoTime() - start, sent != null ? sent.length : 0, response.code() >= 400);
+        return response.newBuilder().body(new CountingResponseBody(response.body(), endpoint)).build();
+    }
+
+    private static class CountingRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private volatile long length;
+
+        CountingRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            length = 0;
+            BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    length += byteCount;
+                }
+            });
+            delegate.writeTo(counting);
+            counting.emit();
+        }
+    }
+
+    private class CountingResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final String endpoint;
+        private BufferedSource source;
+
+        CountingResponseBody(ResponseBody delegate, String endpoint) {
+            this.delegate = delegate;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public synchronized BufferedSource source() throws IOException {
+            if (source == null) {
+                source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                    private long received;
+                    private boolean closed;
+
+                    @Override
+                    public long read(Buffer sink, long byteCount) throws IOException {
+                        long read = super.read(sink, byteCount);
+                        if (read > 0) {
+                            received += read;
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            metrics.received(endpoint, received);
+                        }
+                        super.close();
+                    }
+                });
+            }
+            return source;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record of the work done by a load, so that an interrupted load can be resumed.
+ *
+ * The journal holds one line per completed phase and per created entity. Lines are buffered
+ * and synced to disk in batches, every SYNC_EVERY records or SYNC_INTERVAL milliseconds, and
+ * at each phase completion. A crash may lose the last batch: entities of that batch are found
+ * existing when the load is resumed, and creations tolerate it.
+ *
+ * Only the entities read from a resumed journal are kept in memory: a run creates each entity
+ * once, so those it records are only appended to the file, and the memory of a load does not
+ * depend on how many entities it generates.
+ *
+ * It also holds the done steps of the sample phases that cannot simply be run again, such as
+ * check ins or new versions. They are synced at once; only a step in flight at the crash is
+ * sent again.
+ *
+ * A journal belongs to a workspace. Opened without resuming, for another workspace, or found
+ * empty or damaged, it starts empty.
+ */
+public class LoadJournal implements Closeable {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final String WORKSPACE = "workspace";
+    private static final String PHASE = "phase";
+    private static final String ENTITY = "entity";
+    private static final String STEP = "step";
+    private static final char SEPARATOR = '\t';
+
+    private static final int SYNC_EVERY = 256;
+    private static final long SYNC_INTERVAL = 1000;
+
+    /**
+     * What the first line of a journal file tells about it
+     */
+    private enum Header {
+        RESUMABLE,
+        // No complete line: the crash happened before the header was synced
+        EMPTY,
+        DAMAGED,
+        OTHER_WORKSPACE
+    }
+
+    private final File file;
+    private boolean resumed;
+    private final Set<String> completedPhases = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Read at resume only, never grown by the run
+    private final Set<String> createdEntities = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> doneSteps = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final FileOutputStream out;
+    private final Writer writer;
+    private int unsynced;
+    private long lastSync = System.currentTimeMillis();
+
+    private LoadJournal(File file, boolean append) throws IOException {
+        this.file = file;
+        this.out = new FileOutputStream(file, append);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the journal of given workspace, reading what it already holds if resuming
+     */
+    public static LoadJournal open(File file, String workspaceId, boolean resume) throws IOException {
+        if (resume && file.exists()) {
+            LoadJournal journal = new LoadJournal(file, true);
+            Header header = journal.read(workspaceId);
+            if (header == Header.RESUMABLE) {
+                journal.resumed = true;
+                LOGGER.info("Resuming load from " + file + " : " + journal.completedPhases.size()
+                        + " phases, " + journal.doneSteps.size() + " steps and " + journal.createdEntities.size()
+                        + " entities already done");
+                return journal;
+            }
+            journal.close();
+            if (header == Header.EMPTY) {
+                LOGGER.info("Journal " + file + " is empty, starting from scratch");
+            } else if (header == Header.DAMAGED) {
+                LOGGER.warning("Journal " + file + " is damaged, starting from scratch");
+            } else {
+                LOGGER.warning("Journal " + file + " belongs to another workspace, starting from scratch");
+            }
+        } else if (resume) {
+            LOGGER.warning("No journal found at " + file + ", starting from scratch");
+        }
+
+        LoadJournal journal = new LoadJournal(file, false);
+        journal.append(WORKSPACE, workspaceId);
+        journal.sync();
+        return journal;
+    }
+
+    /**
+     * Tells whether the journal goes on from a previous run, whose last entities may exist without being recorded
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public boolean isPhaseCompleted(String phase) {
+        return completedPhases.contains(phase);
+    }
+
+    /**
+     * Records a completed phase, synced at once
+     */
+    public synchronized void phaseCompleted(String phase) throws IOException {
+        completedPhases.add(phase);
+        append(PHASE, phase);
+        sync();
+    }
+
+    /**
+     * Tells whether given entity was recorded by the run this journal resumes
+     */
+    public boolean isCreated(String kind, String key) {
+        return createdEntities.contains(kind + SEPARATOR + key);
+    }
+
+    /**
+     * Records a created entity, synced with the next batch. It is not kept in memory
+     */
+    public synchronized void created(String kind, String key) throws IOException {
+        append(ENTITY, kind + SEPARATOR + key);
+        if (++unsynced >= SYNC_EVERY || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL) {
+            sync();
+        }
+    }
+
+    public boolean isStepDone(String phase, String step) {
+        return doneSteps.contains(phase + SEPARATOR + step);
+    }
+
+    /**
+     * Records a done step of a phase, synced at once
+     */
+    public synchronized void stepDone(String phase, String step) throws IOException {
+        doneSteps.add(phase + SEPARATOR + step);
+        append(STEP, phase + SEPARATOR + step);
+        sync();
+    }
+
+    /**
+     * Closes and deletes the journal, once the load is complete
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private Header read(String workspaceId) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // Anything after the last line feed is a line torn by a crash
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        if (length == 0) {
+            return Header.EMPTY;
+        }
+        String[] lines = new String(bytes, 0, length, StandardCharsets.UTF_8).split("\n");
+
+        if (!lines[0].startsWith(WORKSPACE + SEPARATOR)) {
+            return Header.DAMAGED;
+        }
+        if (!lines[0].equals(WORKSPACE + SEPARATOR + workspaceId)) {
+            return Header.OTHER_WORKSPACE;
+        }
+        int damaged = 0;
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.startsWith(PHASE + SEPARATOR)) {
+                completedPhases.add(line.substring(PHASE.length() + 1));
+            } else if (line.startsWith(ENTITY + SEPARATOR)) {
+                createdEntities.add(line.substring(ENTITY.length() + 1));
+            } else if (line.startsWith(STEP + SEPARATOR)) {
+                doneSteps.add(line.substring(STEP.length() + 1));
+            } else {
+                damaged++;
+            }
+        }
+        if (damaged > 0) {
+            // Their work is done again, creations tolerate it
+            LOGGER.warning("Journal " + file + " has " + damaged + " damaged lines, ignoring them");
+        }
+
+        if (length < bytes.length) {
+            out.getChannel().truncate(length);
+        }
+        return Header.RESUMABLE;
+    }
+
+    private void append(String type, String value) throws IOException {
+        writer.write(type + SEPARATOR + value + '\n');
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        out.getFD().sync();
+        unsynced = 0;
+        lastSync = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Durations of the load phases and of the API calls, by phase and by endpoint.
+ *
+ * Every series holds a latency histogram, the number of failures and the number of bytes
+ * sent and received. Series are reported at the end of a load as count, p50, p90, p99 and max,
+ * and can be exported as JSON or CSV to compare runs. One instance may be shared by the
+ * loaders of several workspaces, their series are then merged.
+ */
+public class LoadMetrics {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final String PHASE = "phase";
+    private static final String ENDPOINT = "endpoint";
+
+    private static class Series {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    private final ConcurrentMap<String, Series> phases = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Series> endpoints = new ConcurrentHashMap<>();
+
+    public void phase(String name, long nanos, boolean failed) {
+        record(phases, name, nanos, 0, failed);
+    }
+
+    /**
+     * @param endpoint method and path of the call, identifiers masked
+     * @param bytes    size of the request body sent
+     * @param failed   whether the call failed or got an error status
+     */
+    public void call(String endpoint, long nanos, long bytes, boolean failed) {
+        record(endpoints, endpoint, nanos, bytes, failed);
+    }
+
+    /**
+     * Adds the size of a response body, read after its call was recorded
+     */
+    public void received(String endpoint, long bytes) {
+        if (bytes > 0) {
+            series(endpoints, endpoint).bytes.addAndGet(bytes);
+        }
+    }
+
+    public void logReport() {
+        if (phases.isEmpty() && endpoints.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Latencies by phase and endpoint :");
+        LOGGER.info(String.format("%-8s %-60s %8s %6s %10s %10s %10s %10s %10s",
+                "", "", "count", "errors", "MB", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        logReport(PHASE, phases);
+        logReport(ENDPOINT, endpoints);
+    }
+
+    public void exportJson(File file) throws IOException {
+        try (JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            json.setIndent("  ");
+            json.beginObject();
+            exportJson(json, "phases", phases);
+            exportJson(json, "endpoints", endpoints);
+            json.endObject();
+        }
+        LOGGER.info("Load metrics exported to " + file);
+    }
+
+    public void exportCsv(File file) throws IOException {
+        try (PrintWriter csv = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            csv.println("type,name,count,errors,bytes,mean_us,p50_us,p90_us,p99_us,max_us");
+            exportCsv(csv, PHASE, phases);
+            exportCsv(csv, ENDPOINT, endpoints);
+            if (csv.checkError()) {
+                throw new IOException("Cannot write " + file);
+            }
+        }
+        LOGGER.info("Load metrics exported to " + file);
+    }
+
+    private void record(ConcurrentMap<String, Series> series, String name, long nanos, long bytes, boolean failed) {
+        Series target = series(series, name);
+        target.latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (bytes > 0) {
+            target.bytes.addAndGet(bytes);
+        }
+        if (failed) {
+            target.errors.incrementAndGet();
+        }
+    }
+
+    private static Series series(ConcurrentMap<String, Series> series, String name) {
+        Series target = series.get(name);
+        if (target == null) {
+            Series created = new Series();
+            target = series.putIfAbsent(name, created);
+            if (target == null) {
+                target = created;
+            }
+        }
+        return target;
+    }
+
+    private void logReport(String type, Map<String, Series> series) {
+        for (Map.Entry<String, Series> entry : new TreeMap<>(series).entrySet()) {
+            Series value = entry.getValue();
+            LatencyHistogram latencies = value.latencies;
+            LOGGER.info(String.format("%-8s %-60s %8d %6d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    type, entry.getKey(), latencies.getCount(), value.errors.get(), value.bytes.get() / 1e6,
+                    latencies.getPercentile(50) / 1e3, latencies.getPercentile(90) / 1e3,
+                    latencies.getPercentile(99) / 1e3, latencies.getMax() / 1e3));
+        }
+    }
+
+    private void exportJson(JsonWriter json, String name, Map<String, Series> series) throws IOException {
+        json.name(name).beginArray();
+        for (Map.Entry<String, Series> entry : new TreeMap<>(series).entrySet()) {
+            Series value = entry.getValue();
+            LatencyHistogram latencies = value.latencies;
+            json.beginObject()
+                    .name("name").value(entry.getKey())
+                    .name("count").value(latencies.getCount())
+                    .name("errors").value(value.errors.get())
+                    .name("bytes").value(value.bytes.get())
+                    .name("meanMicros").value(latencies.getMean())
+                    .name("p50Micros").value(latencies.getPercentile(50))
+                    .name("p90Micros").value(latencies.getPercentile(90))
+                    .name("p99Micros").value(latencies.getPercentile(99))
+                    .name("maxMicros").value(latencies.getMax())
+                    .endObject();
+        }
+        json.endArray();
+    }
+
+    private void exportCsv(PrintWriter csv, String type, Map<String, Series> series) {
+        for (Map.Entry<String, Series> entry : new TreeMap<>(series).entrySet()) {
+            Series value = entry.getValue();
+            LatencyHistogram latencies = value.latencies;
+            csv.println(type + ",\"" + entry.getKey().replace("\"", "\"\"") + "\"," + latencies.getCount() + ","
+                    + value.errors.get() + "," + value.bytes.get() + "," + latencies.getMean() + ","
+                    + latencies.getPercentile(50) + "," + latencies.getPercentile(90) + ","
+                    + latencies.getPercentile(99) + "," + latencies.getMax());
+        }
+    }
+}
@@ -20,10 +20,14 @@
 
 package com.docdoku.loaders;
 
+import com.docdoku.plm.api.client.ApiClient;
 import com.docdoku.plm.api.client.ApiException;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,23 +55,71 @@ public class Main {
         try {
             parser.parseArgument(args);
         } catch (CmdLineException e) {
-            LOGGER.log(Level.SEVERE, "Usage : ./loadSample.sh -u userLogin -p userPassword -w workspaceId -h host");
+            LOGGER.log(Level.SEVERE, "Usage : ./loadSample.sh -u userLogin -p userPassword -w workspaceId -h host [-t threads] [--workspaces count]");
             return;
         }
 
+        if (commandLine.getLogFile() != null || commandLine.getLogFormat() != SampleLoaderLogger.Format.TEXT
+                || commandLine.getLogBuffer() != SampleLoaderLogger.DEFAULT_BUFFER
+                || commandLine.getLogOverflow() != AsyncLogHandler.Overflow.BLOCK) {
+            SampleLoaderLogger.configure(commandLine.getLogFile(), commandLine.getLogFormat(),
+                    commandLine.getLogBuffer(), commandLine.getLogOverflow());
+        }
+
+        EmbeddedServer embeddedServer = null;
+        if (EmbeddedServer.HOST.equals(commandLine.getUrl())) {
+            embeddedServer = new EmbeddedServer();
+            embeddedServer.setLatency(commandLine.getEmbeddedLatency());
+            embeddedServer.setErrorRate(commandLine.getEmbeddedErrorRate());
+            commandLine.setUrl(embeddedServer.start());
+        }
+
+        try {
+            load(commandLine);
+        } finally {
+            if (embeddedServer != null) {
+                embeddedServer.close();
+            }
+        }
+    }
+
+    private static void load(SampleLoaderCommandLine commandLine) throws Exception {
         String login = commandLine.getLogin();
         String password = commandLine.getPassword();
         String workspaceId = commandLine.getWorkspaceId();
         String url = commandLine.getUrl();
 
+        if (commandLine.getReplay() != null) {
+            replay(commandLine);
+            return;
+        }
+
+        LoadMetrics metrics = new LoadMetrics();
+        SampleRandom random;
+        try {
+            random = createRandom(commandLine);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage());
+            return;
+        }
+
+        if (commandLine.getWorkspaces() > 1) {
+            try {
+                loadWorkspaces(commandLine, metrics, random);
+            } finally {
+                report(commandLine, metrics);
+            }
+            return;
+        }
+
         // Use generated workspace id if not specified
         if(null == workspaceId || "".equals(workspaceId.trim())){
             LOGGER.log(Level.INFO, "No workspace name supplied, generating one...");
-            workspaceId = "wks-" + UUID.randomUUID().toString().substring(0,8);
+            workspaceId = generateWorkspaceId();
             LOGGER.log(Level.INFO, "Using "+ workspaceId + " as workspace name ");
         }
 
-        SampleLoader sampleLoader = new SampleLoader(login, password, workspaceId, url + "/api");
+        SampleLoader sampleLoader = createSampleLoader(commandLine, workspaceId, metrics, random);
 
         try {
             sampleLoader.load();
@@ -75,7 +127,145 @@ public class Main {
         } catch (ApiException e) {
             LOGGER.log(Level.SEVERE, "Ooops, something went wrong while loading sample data : " + e.getMessage(), e);
             e.printStackTrace();
+        } finally {
+            report(commandLine, metrics);
+        }
+    }
+
+    private static void loadWorkspaces(final SampleLoaderCommandLine commandLine, final LoadMetrics metrics,
+                                       final SampleRandom random) throws InterruptedException {
+        String workspaceId = commandLine.getWorkspaceId();
+        List<String> workspaceIds = new ArrayList<>();
+
+        // Suffix the given workspace id, or generate one id per workspace
+        for (int i = 1; i <= commandLine.getWorkspaces(); i++) {
+            if (null == workspaceId || "".equals(workspaceId.trim())) {
+                workspaceIds.add(generateWorkspaceId());
+            } else {
+                workspaceIds.add(workspaceId.trim() + "-" + i);
+            }
+        }
+
+        if (commandLine.getRecord() != null) {
+            LOGGER.warning("Recording is only available when loading a single workspace, --record is ignored");
+        }
+
+        LOGGER.info("Loading " + workspaceIds.size() + " workspaces, " + commandLine.getWorkspaceThreads() + " at a time...");
+
+        WorkspaceFanOut fanOut = new WorkspaceFanOut(new WorkspaceFanOut.LoaderFactory() {
+            @Override
+            public SampleLoader create(String workspaceId, int index) {
+                SampleLoader sampleLoader = createSampleLoader(commandLine, workspaceId, metrics, random);
+                // The organization belongs to the caller, not to a workspace: only create it once
+                sampleLoader.setCreateOrganization(index == 0);
+                return sampleLoader;
+            }
+        }, commandLine.getWorkspaceThreads());
+
+        if (fanOut.load(workspaceIds)) {
+            LOGGER.info("Congratulations ! \n Everything is ok, you can now connect to DocDokuPLM " + commandLine.getUrl() + "\n" + "Credentials : " + commandLine.getLogin() + "/" + commandLine.getPassword());
+        } else {
+            LOGGER.severe("Ooops, something went wrong while loading some workspaces");
+        }
+    }
+
+    private static void report(SampleLoaderCommandLine commandLine, LoadMetrics metrics) {
+        metrics.logReport();
+        try {
+            if (commandLine.getMetricsJson() != null) {
+                metrics.exportJson(commandLine.getMetricsJson());
+            }
+            if (commandLine.getMetricsCsv() != null) {
+                metrics.exportCsv(commandLine.getMetricsCsv());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot export load metrics : " + e.getMessage(), e);
+        }
+    }
+
+    private static void replay(SampleLoaderCommandLine commandLine) throws Exception {
+        String workspaceId = commandLine.getWorkspaceId();
+        if (null == workspaceId || "".equals(workspaceId.trim())) {
+            workspaceId = generateWorkspaceId();
+            LOGGER.info("No workspace name supplied, replaying in " + workspaceId);
+        }
+
+        ApiClient client = new SessionPool(commandLine.getUrl() + "/api").get(commandLine.getLogin(), commandLine.getPassword());
+        TraceReplayer replayer = new TraceReplayer(client, commandLine.getUrl(), workspaceId);
+        replayer.setPacing(commandLine.getReplayPacing());
+        replayer.setConcurrency(commandLine.getReplayThreads());
+        replayer.replay(commandLine.getReplay());
+    }
+
+    private static SampleRandom createRandom(SampleLoaderCommandLine commandLine) {
+        SampleRandom random;
+        if (commandLine.getSeed() != null) {
+            random = new SampleRandom(commandLine.getSeed());
+        } else {
+            random = new SampleRandom();
+            LOGGER.info("Generating data with seed " + random.getSeed() + ", use --seed " + random.getSeed() + " to generate it again");
         }
+        if (commandLine.getAttributeValues() != null) {
+            random.setDistributions(commandLine.getAttributeValues());
+        }
+        return random;
+    }
+
+    private static SampleLoader createSampleLoader(SampleLoaderCommandLine commandLine, String workspaceId, LoadMetrics metrics,
+                                                   SampleRandom random) {
+        SampleLoader sampleLoader = new SampleLoader(commandLine.getLogin(), commandLine.getPassword(), workspaceId, commandLine.getUrl() + "/api");
+        sampleLoader.setMetrics(metrics);
+        sampleLoader.setRandom(random);
+        sampleLoader.setPhaseConcurrency(commandLine.getThreads());
+        sampleLoader.setAccountConcurrency(commandLine.getAccountThreads());
+        sampleLoader.setUploadConcurrency(commandLine.getUploadThreads());
+        sampleLoader.setAclConcurrency(commandLine.getAclThreads());
+        sampleLoader.setConversionTimeout(commandLine.getConversionTimeout() * 1000L);
+        sampleLoader.setTokenRefresh(commandLine.getTokenRefresh() * 1000L);
+        sampleLoader.setRetryAttempts(commandLine.getRetries());
+        sampleLoader.setRetryBudget(commandLine.getRetryBudget());
+        sampleLoader.setResume(commandLine.isResume());
+        sampleLoader.setIdempotent(commandLine.isIdempotent());
+        sampleLoader.setJournalDirectory(commandLine.getJournalDirectory());
+        if (commandLine.getWorkspaces() <= 1) {
+            sampleLoader.setTraceFile(commandLine.getRecord());
+        }
+
+        if (commandLine.getBomParts() > 0) {
+            BomGenerator bomGenerator = new BomGenerator();
+            bomGenerator.setPartCount(commandLine.getBomParts());
+            bomGenerator.setDepth(commandLine.getBomDepth());
+            bomGenerator.setFanOut(commandLine.getBomFanOut());
+            bomGenerator.setOptionalRatio(commandLine.getBomOptionalRatio());
+            bomGenerator.setSubstituteRatio(commandLine.getBomSubstituteRatio());
+            bomGenerator.setLeafGeometry(commandLine.getBomGeometry());
+            bomGenerator.setLeafGeometrySize(commandLine.getBomGeometrySize());
+            bomGenerator.setConcurrency(commandLine.getBomThreads());
+            // The logged seed of a run without --seed must give the same structure again
+            bomGenerator.setSeed(random.getSeed());
+            sampleLoader.setBomGenerator(bomGenerator);
+        }
+
+        if (commandLine.getDocuments() > 0) {
+            DocumentGenerator documentGenerator = new DocumentGenerator();
+            documentGenerator.setDocumentCount(commandLine.getDocuments());
+            documentGenerator.setConcurrency(commandLine.getDocumentThreads());
+            sampleLoader.setDocumentGenerator(documentGenerator);
+        }
+
+        if (commandLine.getProductInstances() > 0) {
+            ProductInstanceGenerator productInstanceGenerator = new ProductInstanceGenerator();
+            productInstanceGenerator.setInstanceCount(commandLine.getProductInstances());
+            productInstanceGenerator.setConcurrency(commandLine.getProductInstanceThreads());
+            productInstanceGenerator.setCheckpoint(commandLine.getProductInstanceCheckpoint());
+            sampleLoader.setProductInstanceGenerator(productInstanceGenerator);
+        }
+
+        return sampleLoader;
+    }
+
+    private static String generateWorkspaceId() {
+        return "wks-" + UUID.randomUUID().toString().substring(0,8);
     }
 
 }
@@ -0,0 +1,242 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the load phases as a dependency graph: each phase declares the phases it needs,
+ * and every phase whose prerequisites are done is started on a bounded thread pool.
+ *
+ * When several phases are ready, the one declared first is started first, whatever the order
+ * their prerequisites completed in. So a concurrency of 1 gives the same sequence as calling
+ * them one after another in declaration order, as long as each phase is declared after its
+ * prerequisites.
+ *
+ * With a journal, completed phases are recorded, and phases recorded by a previous run are
+ * not run again. With metrics, the duration of every phase run is recorded.
+ */
+public class PhaseScheduler {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    /**
+     * A unit of work of the load process
+     */
+    public interface Phase {
+        void run() throws ApiException, IOException, InterruptedException;
+    }
+
+    private static class Node {
+        private final String name;
+        private final Phase phase;
+        private final int index;
+        private final List<String> prerequisites;
+        private final List<Node> dependents = new ArrayList<>();
+        private int remaining;
+
+        Node(String name, int index, Phase phase, List<String> prerequisites) {
+            this.name = name;
+            this.index = index;
+            this.phase = phase;
+            this.prerequisites = prerequisites;
+        }
+    }
+
+    // Ready phases, the first declared one first
+    private static final Comparator<Node> DECLARATION_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return Integer.compare(a.index, b.index);
+        }
+    };
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final int concurrency;
+    private LoadJournal journal;
+    private LoadMetrics metrics;
+
+    public PhaseScheduler(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, got " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public void addPhase(String name, Phase phase, String... prerequisites) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Phase " + name + " is already declared");
+        }
+        nodes.put(name, new Node(name, nodes.size(), phase, Arrays.asList(prerequisites)));
+    }
+
+    /**
+     * Sets the journal phases are recorded in and skipped from, none if null
+     */
+    public void setJournal(LoadJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the metrics phase durations are recorded to, none if null
+     */
+    public void setMetrics(LoadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void run() throws ApiException, IOException, InterruptedException {
+        link();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("sample-loader-phase"));
+        CompletionService<Node> completionService = new ExecutorCompletionService<>(executor);
+
+        Queue<Node> ready = new PriorityQueue<>(nodes.size(), DECLARATION_ORDER);
+        for (Node node : nodes.values()) {
+            if (node.remaining == 0) {
+                ready.add(node);
+            }
+        }
+
+        int running = 0;
+        int completed = 0;
+        Throwable failure = null;
+
+        try {
+            while (completed < nodes.size()) {
+
+                // No more than the pool runs, so that the next phase is picked when a thread frees up
+                while (failure == null && running < concurrency && !ready.isEmpty()) {
+                    final Node node = ready.poll();
+                    if (journal != null && journal.isPhaseCompleted(node.name)) {
+                        LOGGER.info("Skipping " + node.name + ", completed by a previous run");
+                        completed++;
+                        release(node, ready);
+                        continue;
+                    }
+                    completionService.submit(new Callable<Node>() {
+                        @Override
+                        public Node call() throws Exception {
+                            long start = System.nanoTime();
+                            boolean failed = true;
+                            try {
+                                node.phase.run();
+                                failed = false;
+                            } finally {
+                                if (metrics != null) {
+                                    metrics.phase(node.name, System.nanoTime() - start, failed);
+                                }
+                            }
+                            if (journal != null) {
+                                journal.phaseCompleted(node.name);
+                            }
+                            return node;
+                        }
+                    });
+                    running++;
+                }
+
+                if (running == 0) {
+                    break;
+                }
+
+                Future<Node> future = completionService.take();
+                running--;
+
+                try {
+                    Node done = future.get();
+                    completed++;
+                    release(done, ready);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                        LOGGER.log(Level.SEVERE, "A load phase failed, waiting for running phases to end...");
+                    } else {
+                        LOGGER.log(Level.SEVERE, "Another load phase failed : " + e.getCause().getMessage());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure != null) {
+            SampleLoaderUtils.rethrow(failure);
+        }
+    }
+
+    private void release(Node done, Queue<Node> ready) {
+        for (Node dependent : done.dependents) {
+            if (--dependent.remaining == 0) {
+                ready.add(dependent);
+            }
+        }
+    }
+
+    private void link() {
+        for (Node node : nodes.values()) {
+            node.dependents.clear();
+            node.remaining = node.prerequisites.size();
+        }
+
+        for (Node node : nodes.values()) {
+            for (String prerequisite : node.prerequisites) {
+                Node required = nodes.get(prerequisite);
+                if (required == null) {
+                    throw new IllegalStateException("Phase " + node.name + " requires unknown phase " + prerequisite);
+                }
+                required.dependents.add(node);
+            }
+        }
+
+        // Kahn's algorithm on a copy of the counters, so a cycle is reported before any call is made
+        Map<Node, Integer> counters = new HashMap<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Node node : nodes.values()) {
+            counters.put(node, node.remaining);
+            if (node.remaining == 0) {
+                queue.add(node);
+            }
+        }
+
+        int visited = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            visited++;
+            for (Node dependent : node.dependents) {
+                int count = counters.get(dependent) - 1;
+                counters.put(dependent, count);
+                if (count == 0) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        if (visited != nodes.size()) {
+            throw new IllegalStateException("Load phases contain a dependency cycle");
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.ProductBaselineDTO;
+import com.docdoku.plm.api.models.ProductInstanceCreationDTO;
+import com.docdoku.plm.api.services.ProductBaselineApi;
+import com.docdoku.plm.api.services.ProductInstancesApi;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Generates a large number of product instances spread over all the baselines of a configuration item.
+ *
+ * Serial numbers are produced one at a time while instances are created on a bounded pool, so
+ * memory does not depend on the instance count. Progress is saved in a checkpoint file as the
+ * number below which every instance exists; a new run with the same checkpoint goes on from
+ * there, instances already created after that point are skipped.
+ */
+public class ProductInstanceGenerator {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final int CHECKPOINT_STEP = 1000;
+    private static final int CONFLICT = 409;
+
+    private String configurationItemId = "CAR-001";
+    private String serialPrefix = "GEN";
+    private long instanceCount = 1000;
+    private int concurrency = 8;
+    private File checkpoint;
+
+    public void setConfigurationItemId(String configurationItemId) {
+        this.configurationItemId = configurationItemId;
+    }
+
+    /**
+     * Serial numbers are made of this prefix and the instance number
+     */
+    public void setSerialPrefix(String serialPrefix) {
+        this.serialPrefix = serialPrefix;
+    }
+
+    public void setInstanceCount(long instanceCount) {
+        this.instanceCount = instanceCount;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the file progress is saved to and resumed from, no checkpoint if null
+     */
+    public void setCheckpoint(File checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public void generate(final ApiClient client, final String workspaceId) throws ApiException, IOException, InterruptedException {
+        final List<ProductBaselineDTO> baselines = new ProductBaselineApi(client)
+                .getProductBaselinesForProduct(workspaceId, configurationItemId);
+        if (baselines.isEmpty()) {
+            throw new IllegalStateException("No baseline found for " + configurationItemId);
+        }
+
+        long start = readCheckpoint(workspaceId);
+        if (start > 0) {
+            LOGGER.info("Resuming product instances generation from " + serial(start));
+        }
+        LOGGER.info("Generating " + (instanceCount - start) + " product instances of " + configurationItemId
+                + " on " + baselines.size() + " baselines...");
+
+        final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+        final AtomicLong done = new AtomicLong(start);
+        long next = start;
+
+        try (TaskBatch batch = new TaskBatch("product-instances", concurrency)) {
+            for (; next < instanceCount && !batch.hasFailures(); next++) {
+                final long number = next;
+                inFlight.add(number);
+
+                batch.submit(serial(number), new TaskBatch.Task() {
+                    @Override
+                    public void run() throws ApiException, IOException {
+                        createInstance(client, workspaceId, baselines.get((int) (number % baselines.size())), number);
+                        inFlight.remove(number);
+
+                        if (done.incrementAndGet() % CHECKPOINT_STEP == 0) {
+                            Long oldest = inFlight.isEmpty() ? null : inFlight.first();
+                            writeCheckpoint(workspaceId, oldest != null ? oldest : number + 1);
+                            LOGGER.info(done.get() + " product instances generated");
+                        }
+                    }
+                });
+            }
+            batch.awaitOrThrow();
+        } finally {
+            Long oldest = inFlight.isEmpty() ? null : inFlight.first();
+            writeCheckpoint(workspaceId, oldest != null ? oldest : next);
+        }
+
+        LOGGER.info(done.get() + " product instances generated");
+    }
+
+    private void createInstance(ApiClient client, String workspaceId, ProductBaselineDTO baseline, long number) throws ApiException {
+        ProductInstanceCreationDTO productInstance = new ProductInstanceCreationDTO();
+        productInstance.setConfigurationItemId(configurationItemId);
+        productInstance.setSerialNumber(serial(number));
+        productInstance.setBaselineId(baseline.getId());
+
+        try {
+            new ProductInstancesApi(client).createProductInstanceMaster(workspaceId, productInstance);
+        } catch (ApiException e) {
+            // Created by the run the checkpoint comes from, after its last save
+            if (e.getCode() != CONFLICT) {
+                throw e;
+            }
+        }
+    }
+
+    private String serial(long number) {
+        return String.format("%s-%010d", serialPrefix, number + 1);
+    }
+
+    private long readCheckpoint(String workspaceId) throws IOException {
+        if (checkpoint == null || !checkpoint.exists()) {
+            return 0;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(checkpoint)) {
+            properties.load(in);
+        }
+
+        if (!workspaceId.equals(properties.getProperty("workspace"))
+                || !configurationItemId.equals(properties.getProperty("configurationItem"))
+                || !serialPrefix.equals(properties.getProperty("serialPrefix"))) {
+            LOGGER.warning("Checkpoint " + checkpoint + " belongs to another generation, starting from scratch");
+            return 0;
+        }
+
+        return Long.parseLong(properties.getProperty("next", "0"));
+    }
+
+    private synchronized void writeCheckpoint(String workspaceId, long next) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("workspace", workspaceId);
+        properties.setProperty("configurationItem", configurationItemId);
+        properties.setProperty("serialPrefix", serialPrefix);
+        properties.setProperty("next", Long.toString(next));
+
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, "Product instances generation progress");
+        }
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
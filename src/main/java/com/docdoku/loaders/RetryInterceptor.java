@@ -0,0 +1,200 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retries the HTTP calls of every API service when the server sheds load or the connection drops.
+ *
+ * 429, 502, 503 and 504 responses and socket errors (connection refused or reset) are retried,
+ * any other response is returned to the service as is, so validation errors fail at once.
+ * Retries wait an exponential backoff with full jitter, or the Retry-After delay of the server.
+ * Each call is limited to a number of attempts, and all calls share a global budget of retries:
+ * once spent, errors are no longer retried.
+ *
+ * A call retried after a connection reset may have been processed by the server, a creation
+ * then fails with a conflict instead of the original error.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_BUDGET = 1000;
+    private static final long BASE_DELAY = 200;
+    private static final long MAX_DELAY = 10000;
+
+    // Segments followed by the workspace id or the id of an item, which may be a lower case word
+    private static final Set<String> ITEM_PARENTS = new HashSet<>(Arrays.asList(
+            "workspaces", "files", "users", "groups", "folders", "documents", "parts", "products",
+            "tags", "roles", "workflow-models", "document-templates", "part-templates"));
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private final AtomicLong budget = new AtomicLong(DEFAULT_BUDGET);
+    private final ConcurrentMap<String, AtomicLong> retries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> giveUps = new ConcurrentHashMap<>();
+
+    /**
+     * Sets how many times a call is sent at most, 1 disables retries
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets how many retries all calls may do together
+     */
+    public void setBudget(long budget) {
+        this.budget.set(budget);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            SocketException failure = null;
+            try {
+                response = chain.proceed(request);
+            } catch (SocketException e) {
+                failure = e;
+            }
+
+            if (failure == null && !isRetryable(response.code())) {
+                return response;
+            }
+
+            String endpoint = endpoint(request);
+            String reason = failure != null ? failure.toString() : "HTTP " + response.code();
+
+            if (attempt >= maxAttempts || budget.getAndDecrement() <= 0) {
+                count(giveUps, endpoint);
+                LOGGER.warning("Giving up " + endpoint + " after " + attempt + " attempts : " + reason);
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+
+            long delay = delay(attempt, response);
+            if (response != null) {
+                response.body().close();
+            }
+            count(retries, endpoint);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Retrying " + endpoint + " in " + delay + " ms (attempt " + (attempt + 1) + ") : " + reason);
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + endpoint);
+            }
+        }
+    }
+
+    public void logStatistics() {
+        if (retries.isEmpty() && giveUps.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Retries by endpoint :");
+        Map<String, AtomicLong> sorted = new TreeMap<>(retries);
+        for (String endpoint : giveUps.keySet()) {
+            if (!sorted.containsKey(endpoint)) {
+                sorted.put(endpoint, new AtomicLong());
+            }
+        }
+        for (Map.Entry<String, AtomicLong> entry : sorted.entrySet()) {
+            AtomicLong failed = giveUps.get(entry.getKey());
+            LOGGER.info("  " + entry.getKey() + " : " + entry.getValue().get() + " retries, "
+                    + (failed != null ? failed.get() : 0) + " given up");
+        }
+    }
+
+    private boolean isRetryable(int code) {
+        return code == 429 || code == 502 || code == 503 || code == 504;
+    }
+
+    long delay(int attempt, Response response) {
+        if (response != null) {
+            String retryAfter = response.header("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    long seconds = Long.parseLong(retryAfter.trim());
+                    // Negative values are invalid, and huge ones would overflow
+                    return Math.max(0, Math.min(seconds, MAX_DELAY / 1000)) * 1000;
+                } catch (NumberFormatException e) {
+                    // HTTP date, use the backoff
+                }
+            }
+        }
+        long ceiling = Math.min(BASE_DELAY << Math.min(attempt - 1, 16), MAX_DELAY);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void count(ConcurrentMap<String, AtomicLong> counters, String endpoint) {
+        AtomicLong counter = counters.get(endpoint);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(endpoint, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Method and path of the request, with '*' in place of the identifiers: the segments following
+     * the workspace or an item collection, and the segments which are not lower case words
+     */
+    static String endpoint(Request request) {
+        StringBuilder endpoint = new StringBuilder(request.method()).append(' ');
+        String previous = null;
+        for (String segment : request.httpUrl().pathSegments()) {
+            boolean identifier = ITEM_PARENTS.contains(previous) || !segment.matches("[a-z]+(-[a-z]+)*");
+            endpoint.append('/').append(identifier ? "*" : segment);
+            previous = identifier ? null : segment;
+        }
+        return endpoint.toString();
+    }
+}
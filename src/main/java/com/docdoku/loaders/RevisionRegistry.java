@@ -0,0 +1,151 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.PartRevisionDTO;
+import com.docdoku.plm.api.services.PartApi;
+import com.docdoku.plm.api.services.WorkspacesApi;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Part revisions as the server returned them to the loader's creations and updates, by number
+ * and version, so that later phases read them without fetching them again.
+ *
+ * The registry keeps the most recently used revisions up to its capacity. A revision not held,
+ * evicted or never registered, is fetched and registered. Writes which do not return the
+ * revision must invalidate it. Revisions are shared: a caller modifying one must write it back
+ * and register the result.
+ */
+public class RevisionRegistry {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final String workspaceId;
+    private final Map<String, PartRevisionDTO> parts;
+    // Latest registered version of each part number, absent when a later version may exist
+    private final Map<String, String> latestVersions = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RevisionRegistry(String workspaceId) {
+        this(workspaceId, DEFAULT_CAPACITY);
+    }
+
+    public RevisionRegistry(String workspaceId, int capacity) {
+        this.workspaceId = workspaceId;
+        this.parts = lru(capacity);
+    }
+
+    /**
+     * Registers the revision returned by a creation or an update, returns it
+     */
+    public synchronized PartRevisionDTO put(PartRevisionDTO partRevision) {
+        if (partRevision != null) {
+            String number = partRevision.getNumber();
+            String version = partRevision.getVersion();
+            parts.put(key(number, version), partRevision);
+            String latest = latestVersions.get(number);
+            if (latest == null || compareVersions(version, latest) >= 0) {
+                latestVersions.put(number, version);
+            }
+        }
+        return partRevision;
+    }
+
+    public PartRevisionDTO getPartRevision(ApiClient client, String number, String version) throws ApiException {
+        PartRevisionDTO partRevision = registered(number, version);
+        if (partRevision != null) {
+            return partRevision;
+        }
+        return put(new PartApi(client).getPartRevision(workspaceId, number, version));
+    }
+
+    public PartRevisionDTO getLatestPartRevision(ApiClient client, String number) throws ApiException {
+        String version;
+        synchronized (this) {
+            version = latestVersions.get(number);
+        }
+        PartRevisionDTO partRevision = version != null ? registered(number, version) : null;
+        if (version == null) {
+            misses.incrementAndGet();
+        }
+        if (partRevision != null) {
+            return partRevision;
+        }
+        return put(new WorkspacesApi(client).getLatestPartRevision(workspaceId, number));
+    }
+
+    /**
+     * To be called once the part revision is changed by a call which does not return it
+     */
+    public synchronized void invalidatePart(String number, String version) {
+        parts.remove(key(number, version));
+    }
+
+    /**
+     * To be called once a version of the part is created by a call which does not return it
+     */
+    public synchronized void partVersionCreated(String number) {
+        latestVersions.remove(number);
+    }
+
+    public void logStatistics() {
+        if (hits.get() > 0 || misses.get() > 0) {
+            LOGGER.info("Revision registry : " + hits.get() + " revisions read from the registry, " + misses.get() + " fetched");
+        }
+    }
+
+    private synchronized PartRevisionDTO registered(String number, String version) {
+        PartRevisionDTO partRevision = parts.get(key(number, version));
+        (partRevision != null ? hits : misses).incrementAndGet();
+        return partRevision;
+    }
+
+    private static String key(String id, String version) {
+        return id + "-" + version;
+    }
+
+    /**
+     * Versions go A to Z, then AA...
+     */
+    private static int compareVersions(String a, String b) {
+        return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+    }
+
+    private static Map<String, PartRevisionDTO> lru(final int capacity) {
+        return new LinkedHashMap<String, PartRevisionDTO>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PartRevisionDTO> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
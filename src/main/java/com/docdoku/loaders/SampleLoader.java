@@ -20,19 +20,20 @@
 
 package com.docdoku.loaders;
 
-import com.docdoku.plm.api.DocDokuPLMClientFactory;
 import com.docdoku.plm.api.client.ApiClient;
 import com.docdoku.plm.api.client.ApiException;
 import com.docdoku.plm.api.models.*;
 import com.docdoku.plm.api.models.utils.AttributesHelper;
 import com.docdoku.plm.api.models.utils.LastIterationHelper;
-import com.docdoku.plm.api.models.utils.WorkflowHelper;
 import com.docdoku.plm.api.services.*;
+import com.squareup.okhttp.Interceptor;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -52,26 +53,227 @@ public class SampleLoader {
     private static final String GROUP_4 = "Group4";
     private static final String GROUP_5 = "Group5";
 
-    private final static int SLEEPTIME = 500;
+    private final static int DEFAULT_PHASE_CONCURRENCY = 4;
+    private final static int DEFAULT_ACCOUNT_CONCURRENCY = 8;
+    private final static int DEFAULT_UPLOAD_CONCURRENCY = 4;
+    private final static int DEFAULT_ACL_CONCURRENCY = 8;
+    private final static long DEFAULT_CONVERSION_TIMEOUT = 120000;
+
+    private static final int CONFLICT = 409;
 
     private String login;
     private String password;
     private String workspaceId;
     private String url;
 
-    private ApiClient client;
+    private final SessionPool sessions;
+    private final UploadAccounting uploadAccounting = new UploadAccounting();
+    private final RetryInterceptor retries = new RetryInterceptor();
     private ApiClient guestClient;
 
+    private int phaseConcurrency = DEFAULT_PHASE_CONCURRENCY;
+    private int accountConcurrency = DEFAULT_ACCOUNT_CONCURRENCY;
+    private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+    private int aclConcurrency = DEFAULT_ACL_CONCURRENCY;
+    // Pool shared by the ACL phases of a load, which run at the same time
+    private ExecutorService aclExecutor;
+    private long conversionTimeout = DEFAULT_CONVERSION_TIMEOUT;
+    private boolean createOrganization = true;
+    private BomGenerator bomGenerator;
+    private DocumentGenerator documentGenerator;
+    private ProductInstanceGenerator productInstanceGenerator;
+    private File journalDirectory = new File(".");
+    private boolean resume;
+    private LoadJournal journal;
+    private boolean idempotent;
+    private ExistingEntities existing = ExistingEntities.none();
+    private final WorkspaceMetadata metadata;
+    private final RevisionRegistry revisions;
+    private File traceFile;
+    private SampleRandom random = new SampleRandom();
+    private LoadMetrics metrics = new LoadMetrics();
+
+    // Entities created by this run, their ACL and affected items are set without listing the workspace again
+    private final List<Integer> milestoneIds = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> requestIds = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> issueIds = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> orderIds = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<String> workflowModelIds = Collections.synchronizedList(new ArrayList<String>());
+    // Sample documents an idempotent load found in the workspace, the earlier load checked them in and out
+    private final Set<String> existingDocuments = Collections.synchronizedSet(new HashSet<String>());
 
     public SampleLoader(String login, String password, String workspaceId, String url) {
         this.login = login;
         this.password = password;
         this.workspaceId = workspaceId;
         this.url = url;
-        this.guestClient = DocDokuPLMClientFactory.createClient(url);
+        this.sessions = new SessionPool(url);
+        this.metadata = new WorkspaceMetadata(workspaceId);
+        this.revisions = new RevisionRegistry(workspaceId);
+        this.guestClient = sessions.getGuestClient();
+        // Every session shares the guest HTTP client, so this covers all the API calls
+        guestClient.getHttpClient().interceptors().add(retries);
+    }
+
+    /**
+     * Sets how many independent load phases may run at the same time (1 runs them sequentially)
+     */
+    public void setPhaseConcurrency(int phaseConcurrency) {
+        this.phaseConcurrency = phaseConcurrency;
+    }
+
+    /**
+     * Sets how many accounts are created and added to the workspace at the same time
+     */
+    public void setAccountConcurrency(int accountConcurrency) {
+        this.accountConcurrency = accountConcurrency;
+    }
+
+    /**
+     * Sets how many binary files a phase uploads at the same time
+     */
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    /**
+     * Sets how many ACL updates of created entities are sent at the same time
+     */
+    public void setAclConcurrency(int aclConcurrency) {
+        this.aclConcurrency = aclConcurrency;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a phase waits for its CAD files to be converted before checking the parts in
+     */
+    public void setConversionTimeout(long conversionTimeout) {
+        this.conversionTimeout = conversionTimeout;
+    }
+
+    /**
+     * Sets after how long, in milliseconds, a user is authenticated again to get a fresh token
+     */
+    public void setTokenRefresh(long tokenRefresh) {
+        sessions.setTokenRefresh(tokenRefresh);
+    }
+
+    /**
+     * Sets how many times an API call is sent at most when the server is overloaded or the connection drops
+     */
+    public void setRetryAttempts(int retryAttempts) {
+        retries.setMaxAttempts(retryAttempts);
+    }
+
+    /**
+     * Sets how many retries all the API calls of the load may do together
+     */
+    public void setRetryBudget(long retryBudget) {
+        retries.setBudget(retryBudget);
+    }
+
+    /**
+     * Sets whether the caller organization is (re)created, loaders seeding several workspaces for
+     * the same caller must only do it once
+     */
+    public void setCreateOrganization(boolean createOrganization) {
+        this.createOrganization = createOrganization;
+    }
+
+    /**
+     * Sets a generator of large product structure to run in addition to the sample data, none if null
+     */
+    public void setBomGenerator(BomGenerator bomGenerator) {
+        this.bomGenerator = bomGenerator;
+    }
+
+    /**
+     * Sets a generator of documents to run in addition to the sample data, none if null
+     */
+    public void setDocumentGenerator(DocumentGenerator documentGenerator) {
+        this.documentGenerator = documentGenerator;
+    }
+
+    /**
+     * Sets a generator of product instances to run in addition to the sample data, none if null
+     */
+    public void setProductInstanceGenerator(ProductInstanceGenerator productInstanceGenerator) {
+        this.productInstanceGenerator = productInstanceGenerator;
+    }
+
+    /**
+     * Sets the directory holding the journal of the load, named after the workspace
+     */
+    public void setJournalDirectory(File journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Sets whether the load goes on from the journal of an interrupted load of the same workspace
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Sets whether existing entities are listed first so that only missing ones get created,
+     * for loads run again on the same workspace
+     */
+    public void setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Sets the file every API call of the load is recorded to, for TraceReplayer, none if null
+     */
+    public void setTraceFile(File traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * Sets the metrics the durations of the phases and API calls are recorded to, shared by the
+     * loaders of several workspaces to report them together
+     */
+    public void setMetrics(LoadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public LoadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the randomness of the generated attribute values, seeded to generate the same data again
+     */
+    public void setRandom(SampleRandom random) {
+        this.random = random;
     }
 
     public void load() throws ApiException, IOException, InterruptedException {
+        List<Interceptor> interceptors = guestClient.getHttpClient().interceptors();
+
+        // Last interceptor, so that it times every attempt of a retried call
+        LatencyInterceptor latencies = new LatencyInterceptor(metrics);
+        interceptors.add(latencies);
+
+        // First interceptor, so that it records calls once whatever their retries
+        TraceRecorder recorder = null;
+        if (traceFile != null) {
+            recorder = new TraceRecorder(traceFile, workspaceId);
+            interceptors.add(0, recorder);
+        }
+
+        try {
+            loadPhases();
+        } finally {
+            interceptors.remove(latencies);
+            if (recorder != null) {
+                interceptors.remove(recorder);
+                recorder.close();
+            }
+        }
+    }
+
+    private void loadPhases() throws ApiException, IOException, InterruptedException {
         LOGGER.info("Starting load process... ");
 
         checkServerAvailability();
@@ -82,49 +284,326 @@ public class SampleLoader {
             LOGGER.info("Cannot create account, trying to use given credentials for next operations");
         }
 
-        client = DocDokuPLMClientFactory.createJWTClient(url, login, password);
+        // Authenticate now, so that bad credentials fail before any phase starts
+        client();
+
+        // A resumed load skips what its interrupted run created, like an idempotent one
+        if (idempotent || resume) {
+            existing = ExistingEntities.fetch(client(), workspaceId);
+        }
+
+        PhaseScheduler scheduler = new PhaseScheduler(phaseConcurrency);
+        declarePhases(scheduler);
+
+        // Kept when the load fails, so that it can be resumed
+        journal = LoadJournal.open(new File(journalDirectory, "sample-loader-" + workspaceId + ".journal"),
+                workspaceId, resume);
+        scheduler.setJournal(journal);
+        scheduler.setMetrics(metrics);
+        aclExecutor = Executors.newFixedThreadPool(aclConcurrency, new NamedThreadFactory("sample-loader-acls"));
+        boolean completed = false;
+        try {
+            scheduler.run();
+            completed = true;
+        } finally {
+            aclExecutor.shutdown();
+            if (completed) {
+                journal.delete();
+            } else {
+                journal.close();
+            }
+            uploadAccounting.logStatistics();
+            retries.logStatistics();
+            revisions.logStatistics();
+        }
+    }
+
+    /**
+     * Declares every load phase with the phases it needs to be completed before it can start.
+     */
+    private void declarePhases(PhaseScheduler scheduler) {
+
+        scheduler.addPhase("createWorkspace", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createWorkspace();
+            }
+        });
+        scheduler.addPhase("addCallerToWorkspace", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                if (!existing.contains(ExistingEntities.Kind.USER, login)) {
+                    addUserToWorkspace(login);
+                }
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createOtherAccounts", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                createOtherAccounts();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createGroups", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                createGroups();
+            }
+        }, "addCallerToWorkspace", "createOtherAccounts");
+        scheduler.addPhase("setAccessPermissionForGroups", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                setAccessPermissionForGroups();
+            }
+        }, "createGroups");
+        scheduler.addPhase("enableUserInWorkspace", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                enableUserInWorkspace();
+            }
+        }, "createGroups");
+        scheduler.addPhase("setAccessPermissionsForUser", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                setAccessPermissionsForUser();
+            }
+        }, "enableUserInWorkspace");
+
+        if (createOrganization) {
+            scheduler.addPhase("createOrganization", new PhaseScheduler.Phase() {
+                @Override
+                public void run() throws ApiException {
+                    createOrganization();
+                }
+            }, "createOtherAccounts");
+        }
+
+        scheduler.addPhase("createMilestones", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createMilestones();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("setMilestoneAcl", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                setMilestoneAcl();
+            }
+        }, "createMilestones", "createGroups");
+        scheduler.addPhase("createRolesAndWorkflow", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createRolesAndWorkflow();
+            }
+        }, "setAccessPermissionForGroups", "setAccessPermissionsForUser");
+        scheduler.addPhase("createRolesAndWorkflowForDoorProduct", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createRolesAndWorkflowForDoorProduct();
+            }
+        }, "setAccessPermissionForGroups", "setAccessPermissionsForUser");
+        scheduler.addPhase("setWorkFlowACL", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                setWorkFlowACL();
+            }
+        }, "createRolesAndWorkflow", "createRolesAndWorkflowForDoorProduct");
+
+        scheduler.addPhase("createDocumentTemplates", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createDocumentTemplates();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createFolders", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createFolders();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createTags", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createTags();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createDocuments", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                createDocuments();
+            }
+        }, "createDocumentTemplates", "createFolders", "setWorkFlowACL");
 
-        createWorkspace();
-        addUserToWorkspace(login);
-        createOtherAccounts();
-        createGroups();
-        setAccessPermissionForGroups();
-        enableUserInWorkspace();
-        setAccessPermissionsForUser();
+        scheduler.addPhase("createPartTemplates", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createPartTemplates();
+            }
+        }, "createWorkspace");
+        scheduler.addPhase("createDoorProduct", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                createDoorProduct();
+            }
+        }, "createPartTemplates", "setWorkFlowACL");
 
-        createOrganization();
+        scheduler.addPhase("createCarProduct", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                createCarProduct();
+            }
+        }, "createPartTemplates", "setWorkFlowACL");
+        scheduler.addPhase("createNewVersionsAndReleasedParts", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                createNewVersionsAndReleasedParts();
+            }
+        }, "createCarProduct");
+        scheduler.addPhase("createEffectivities", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                createEffectivities();
+            }
+        }, "createNewVersionsAndReleasedParts");
+        scheduler.addPhase("createConfiguration", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                createConfiguration();
+            }
+        }, "createDoorProduct");
+        scheduler.addPhase("createBaseline", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                createBaseline();
+            }
+        }, "createNewVersionsAndReleasedParts");
+        scheduler.addPhase("createProductInstance", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createProductInstance();
+            }
+        }, "createBaseline");
 
-        createMilestones();
-        setMilestoneAcl();
-        createRolesAndWorkflow();
-        createRolesAndWorkflowForDoorProduct();
-        setWorkFlowACL();
+        scheduler.addPhase("createRequests", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createRequests();
+            }
+        }, "setAccessPermissionsForUser");
+        scheduler.addPhase("setRequestsAcl", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                setRequestsAcl();
+            }
+        }, "createRequests", "createGroups");
+        scheduler.addPhase("createIssues", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createIssues();
+            }
+        }, "setAccessPermissionsForUser");
+        scheduler.addPhase("setIssuesAcl", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                setIssuesAcl();
+            }
+        }, "createIssues", "createGroups");
+        scheduler.addPhase("createOrders", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                createOrders();
+            }
+        }, "setAccessPermissionsForUser");
+        scheduler.addPhase("setOrdersAcl", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException, InterruptedException {
+                setOrdersAcl();
+            }
+        }, "createOrders", "createGroups");
+        scheduler.addPhase("updateAffectedPartInOrder", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                updateAffectedPartInOrder();
+            }
+        }, "setOrdersAcl", "setRequestsAcl", "createDoorProduct");
+        scheduler.addPhase("subscribeGroupToTag", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException {
+                subscribeGroupToTag();
+            }
+        }, "createTags", "createGroups");
+
+        if (bomGenerator != null) {
+            scheduler.addPhase("createGeneratedProduct", new PhaseScheduler.Phase() {
+                @Override
+                public void run() throws ApiException, IOException, InterruptedException {
+                    createGeneratedProduct();
+                }
+            }, "addCallerToWorkspace");
+        }
 
-        createDocumentTemplates();
-        createFolders();
-        createTags();
-        createDocuments();
+        if (documentGenerator != null) {
+            scheduler.addPhase("createGeneratedDocuments", new PhaseScheduler.Phase() {
+                @Override
+                public void run() throws ApiException, IOException, InterruptedException {
+                    createGeneratedDocuments();
+                }
+            }, "createDocumentTemplates", "createFolders");
+        }
 
-        createPartTemplates();
-        createDoorProduct();
+        if (productInstanceGenerator != null) {
+            scheduler.addPhase("createGeneratedProductInstances", new PhaseScheduler.Phase() {
+                @Override
+                public void run() throws ApiException, IOException, InterruptedException {
+                    createGeneratedProductInstances();
+                }
+            }, "createProductInstance");
+        }
 
-        createCarProduct();
-        createNewVersionsAndReleasedParts();
-        createEffectivities();
-        createConfiguration();
-        createBaseline();
-        createProductInstance();
+        // Checking out creates new iterations, every phase reading the checked in ones must be done
+        scheduler.addPhase("checkoutParts", new PhaseScheduler.Phase() {
+            @Override
+            public void run() throws ApiException, IOException {
+                checkoutParts();
+            }
+        }, "createDocuments", "createEffectivities", "createConfiguration", "createProductInstance",
+                "updateAffectedPartInOrder");
+    }
 
-        createRequests();
-        setRequestsAcl();
-        createIssues();
-        setIssuesAcl();
-        createOrders();
-        setOrdersAcl();
-        updateAffectedPartInOrder();
-        subscribeGroupToTag();
+    /**
+     * Client authenticated as the caller, token is refreshed by the session pool when needed
+     */
+    private ApiClient client() throws ApiException {
+        return sessions.get(login, password);
+    }
 
-        checkoutParts();
+    /**
+     * Tells whether a step of a phase is left to do, false when the interrupted run of a resumed load did it
+     */
+    private boolean isPending(String phase, String step) {
+        return !journal.isStepDone(phase, step);
+    }
+
+    /**
+     * Rethrows the failure of a creation, unless an idempotent load finds the entity created by an earlier
+     * load, or a resumed load by its interrupted run
+     */
+    private void alreadyCreated(ApiException e, String entity) throws ApiException {
+        if (!(idempotent || journal.isResumed()) || e.getCode() != CONFLICT) {
+            throw e;
+        }
+        LOGGER.info(entity + " already created, skipping it");
+    }
+
+    /**
+     * Tells whether the workspace held the entity before this load. A resumed load relies on its journal
+     * instead, its interrupted run may have created the entity without completing it.
+     */
+    private boolean existedBefore(ExistingEntities.Kind kind, String key) {
+        return !journal.isResumed() && existing.contains(kind, key);
+    }
+
+    private boolean partExistedBefore(String number, String version) {
+        return !journal.isResumed() && existing.containsPart(number, version);
     }
 
     private void checkServerAvailability() throws ApiException {
@@ -137,70 +616,81 @@ public class SampleLoader {
         createAccount(login);
     }
 
-    private void createOtherAccounts() throws ApiException {
+    private void createOtherAccounts() throws ApiException, IOException, InterruptedException {
         LOGGER.info("Creating accounts");
 
-        for (String pLogin : LOGINS) {
-            try {
-                createAccount(pLogin);
-            } catch (ApiException e) {
-                LOGGER.info("Cannot create account for " + pLogin + ", might already exist");
+        try (TaskBatch batch = new TaskBatch("accounts", accountConcurrency)) {
+            for (final String pLogin : LOGINS) {
+                if (existing.contains(ExistingEntities.Kind.USER, pLogin)) {
+                    continue;
+                }
+                batch.submit(pLogin, new TaskBatch.Task() {
+                    @Override
+                    public void run() throws ApiException {
+                        try {
+                            createAccount(pLogin);
+                        } catch (ApiException e) {
+                            LOGGER.info("Cannot create account for " + pLogin + ", might already exist");
+                        }
+                        addUserToWorkspace(pLogin);
+                    }
+                });
             }
-            addUserToWorkspace(pLogin);
+            batch.awaitOrThrow();
         }
     }
 
-    private void createGroups() throws ApiException {
+    private void createGroups() throws ApiException, IOException {
         LOGGER.info("Creating groups...");
 
-        UserGroupDTO group = new UserGroupDTO();
-        group.setWorkspaceId(workspaceId);
-
-        group.setId(GROUP_1);
-        WorkspacesApi workspacesApi = new WorkspacesApi(client);
-        workspacesApi.createGroup(workspaceId, group);
-
-        group.setId(GROUP_2);
-        workspacesApi.createGroup(workspaceId, group);
-
-        group.setId(GROUP_3);
-        workspacesApi.createGroup(workspaceId, group);
-
-        group.setId(GROUP_4);
-        workspacesApi.createGroup(workspaceId, group);
-
-        group.setId(GROUP_5);
-        workspacesApi.createGroup(workspaceId, group);
-
-        int numGroup = 1;
-        String groupName = "Group" + numGroup;
+        WorkspacesApi workspacesApi = new WorkspacesApi(client());
+        String[] groupIds = {GROUP_1, GROUP_2, GROUP_3, GROUP_4, GROUP_5};
+
+        // Members are only added to the groups created now, existing groups already have them,
+        // unless the interrupted run of a resumed load created them without their members
+        Set<String> createdGroups = new HashSet<>();
+        for (String groupId : groupIds) {
+            if (!existing.contains(ExistingEntities.Kind.GROUP, groupId)) {
+                UserGroupDTO group = new UserGroupDTO();
+                group.setWorkspaceId(workspaceId);
+                group.setId(groupId);
+                workspacesApi.createGroup(workspaceId, group);
+                createdGroups.add(groupId);
+            } else if (journal.isResumed() && isPending("createGroups", "members " + groupId)) {
+                createdGroups.add(groupId);
+            }
+        }
 
-        for (int i = 0; i < LOGINS.length; i++) {
-            UserDTO userDTO = new UserDTO();
-            userDTO.setLogin(LOGINS[i]);
-            if (i % 2 != 0) {//restricted to only two user by group ( one read-only and one full access )
-                userDTO.setMembership(UserDTO.MembershipEnum.READ_ONLY);
-                workspacesApi.addUser(workspaceId, userDTO, groupName);
-                numGroup += 1;
-                groupName = "Group" + numGroup;
-            } else {
-                userDTO.setMembership(UserDTO.MembershipEnum.FULL_ACCESS);
-                workspacesApi.addUser(workspaceId, userDTO, groupName);
+        //restricted to only two user by group ( one full access and one read-only )
+        for (int i = 0; i < groupIds.length; i++) {
+            String groupId = groupIds[i];
+            if (!createdGroups.contains(groupId)) {
+                continue;
+            }
+            addUserToGroup(workspacesApi, LOGINS[2 * i], UserDTO.MembershipEnum.FULL_ACCESS, groupId);
+            addUserToGroup(workspacesApi, LOGINS[2 * i + 1], UserDTO.MembershipEnum.READ_ONLY, groupId);
+            if (GROUP_1.equals(groupId)) {
+                addUserToGroup(workspacesApi, login, UserDTO.MembershipEnum.FULL_ACCESS, groupId);
             }
+            journal.stepDone("createGroups", "members " + groupId);
         }
+        metadata.groupsChanged();
+    }
 
+    private void addUserToGroup(WorkspacesApi workspacesApi, String userLogin, UserDTO.MembershipEnum membership,
+                                String groupId) throws ApiException {
         UserDTO userDTO = new UserDTO();
-        userDTO.setLogin(login);
-        userDTO.setMembership(UserDTO.MembershipEnum.FULL_ACCESS);
-        workspacesApi.addUser(workspaceId, userDTO, GROUP_1);
+        userDTO.setLogin(userLogin);
+        userDTO.setMembership(membership);
+        workspacesApi.addUser(workspaceId, userDTO, groupId);
     }
 
 
     private void subscribeGroupToTag() throws ApiException {
         LOGGER.info("subscribe GROUP_1 and GROUP_2 to tag: API...");
 
-        WorkspacesApi workspacesApi = new WorkspacesApi(client);
-        List<UserGroupDTO> groupDTOs = workspacesApi.getGroups(workspaceId);
+        WorkspacesApi workspacesApi = new WorkspacesApi(client());
+        List<UserGroupDTO> groupDTOs = metadata.getGroups(client());
         List<TagDTO> tags = workspacesApi.getTagsInWorkspace(workspaceId);
 
         TagSubscriptionDTO tagSubscriptionDTO = new TagSubscriptionDTO();
@@ -222,7 +712,7 @@ public class SampleLoader {
         LOGGER.info("enable user in workspace...");
 
         UserDTO userDTO = new UserDTO();
-        WorkspacesApi wksApi = new WorkspacesApi(client);
+        WorkspacesApi wksApi = new WorkspacesApi(client());
 
         for (String LOGIN : LOGINS) {
             userDTO.setLogin(LOGIN);
@@ -236,7 +726,7 @@ public class SampleLoader {
     private void setAccessPermissionsForUser() throws ApiException {
         LOGGER.info("Setting the access permissions of User...");
 
-        WorkspacesApi wksApi = new WorkspacesApi(client);
+        WorkspacesApi wksApi = new WorkspacesApi(client());
 
         for (int i = 0; i < LOGINS.length; i++) {
             if (i % 2 != 0) {
@@ -251,29 +741,21 @@ public class SampleLoader {
     private void setAccessPermissionForGroups() throws ApiException {
         LOGGER.info("Setting the access permissions of groups...");
 
-        WorkspaceUserGroupMemberShipDTO wksGrpMemberShipDTO = new WorkspaceUserGroupMemberShipDTO();
-        WorkspacesApi wksApi = new WorkspacesApi(client);
-
-        wksGrpMemberShipDTO.setWorkspaceId(workspaceId);
-        wksGrpMemberShipDTO.setMemberId(GROUP_1);
-        wksGrpMemberShipDTO.setReadOnly(false);
-        wksApi.setGroupAccess(workspaceId, wksGrpMemberShipDTO);
-
-        wksGrpMemberShipDTO.setMemberId(GROUP_2);
-        wksGrpMemberShipDTO.setReadOnly(false);
-        wksApi.setGroupAccess(workspaceId, wksGrpMemberShipDTO);
+        WorkspacesApi wksApi = new WorkspacesApi(client());
 
-        wksGrpMemberShipDTO.setMemberId(GROUP_3);
-        wksGrpMemberShipDTO.setReadOnly(true);
-        wksApi.setGroupAccess(workspaceId, wksGrpMemberShipDTO);
-
-        wksGrpMemberShipDTO.setMemberId(GROUP_4);
-        wksGrpMemberShipDTO.setReadOnly(true);
-        wksApi.setGroupAccess(workspaceId, wksGrpMemberShipDTO);
+        wksApi.setGroupAccess(workspaceId, groupAccess(GROUP_1, false));
+        wksApi.setGroupAccess(workspaceId, groupAccess(GROUP_2, false));
+        wksApi.setGroupAccess(workspaceId, groupAccess(GROUP_3, true));
+        wksApi.setGroupAccess(workspaceId, groupAccess(GROUP_4, true));
+        wksApi.setGroupAccess(workspaceId, groupAccess(GROUP_5, true));
+    }
 
-        wksGrpMemberShipDTO.setMemberId(GROUP_5);
-        wksGrpMemberShipDTO.setReadOnly(true);
-        wksApi.setGroupAccess(workspaceId, wksGrpMemberShipDTO);
+    private WorkspaceUserGroupMemberShipDTO groupAccess(String groupId, boolean readOnly) {
+        WorkspaceUserGroupMemberShipDTO wksGrpMemberShipDTO = new WorkspaceUserGroupMemberShipDTO();
+        wksGrpMemberShipDTO.setWorkspaceId(workspaceId);
+        wksGrpMemberShipDTO.setMemberId(groupId);
+        wksGrpMemberShipDTO.setReadOnly(readOnly);
+        return wksGrpMemberShipDTO;
     }
 
     private void createAccount(String accountLogin) throws ApiException {
@@ -301,16 +783,25 @@ public class SampleLoader {
 
         UserDTO userDTO = new UserDTO();
         userDTO.setLogin(pLogin);
-        new WorkspacesApi(client).addUser(workspaceId, userDTO, null);
+        new WorkspacesApi(client()).addUser(workspaceId, userDTO, null);
     }
 
     private void createWorkspace() throws ApiException {
+        if (existing.isWorkspaceFound()) {
+            LOGGER.info("Workspace " + workspaceId + " already exists");
+            return;
+        }
+
         LOGGER.info("Creating workspace...");
 
         WorkspaceDTO workspaceDTO = new WorkspaceDTO();
         workspaceDTO.setId(workspaceId);
         workspaceDTO.setDescription("Some workspaceId created from sample loader");
-        new WorkspacesApi(client).createWorkspace(workspaceDTO, login);
+        try {
+            new WorkspacesApi(client()).createWorkspace(workspaceDTO, login);
+        } catch (ApiException e) {
+            alreadyCreated(e, "Workspace " + workspaceId);
+        }
     }
 
 
@@ -318,60 +809,44 @@ public class SampleLoader {
         LOGGER.info("Creating document templates...");
 
         DocumentTemplateCreationDTO template = new DocumentTemplateCreationDTO();
-        DocumentTemplatesApi documentTemplatesApi = new DocumentTemplatesApi(client);
-
-        template.setWorkspaceId(workspaceId);
-        template.setReference("Letter");
-        template.setDocumentType("Paper");
-        template.setMask("LETTER-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
-
-        template.setReference("Invoice");
-        template.setDocumentType("Paper");
-        template.setMask("INVOICE-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
-
-        template.setReference("UserManuals");
-        template.setDocumentType("Documentation");
-        template.setMask("USER-MAN-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
+        DocumentTemplatesApi documentTemplatesApi = new DocumentTemplatesApi(client());
 
-        template.setReference("APIDocuments");
-        template.setDocumentType("APIManuals");
-        template.setMask("API-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
+        String[][] templates = {
+                {"Letter", "Paper", "LETTER-###"},
+                {"Invoice", "Paper", "INVOICE-###"},
+                {"UserManuals", "Documentation", "USER-MAN-###"},
+                {"APIDocuments", "APIManuals", "API-###"},
+                {"OfficeDocuments", "OfficeWriter", "OFFICE-###"},
+                {"SPREADSHEET", "SPREADSHEET", "SPREADSHEET-###"}
+        };
 
-        template.setReference("OfficeDocuments");
-        template.setDocumentType("OfficeWriter");
-        template.setMask("OFFICE-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
-
-        template.setReference("SPREADSHEET");
-        template.setDocumentType("SPREADSHEET");
-        template.setMask("SPREADSHEET-###");
-        documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
+        template.setWorkspaceId(workspaceId);
+        for (String[] reference : templates) {
+            if (existing.contains(ExistingEntities.Kind.DOCUMENT_TEMPLATE, reference[0])) {
+                continue;
+            }
+            template.setReference(reference[0]);
+            template.setDocumentType(reference[1]);
+            template.setMask(reference[2]);
+            documentTemplatesApi.createDocumentMasterTemplate(workspaceId, template);
+        }
     }
 
     private void createFolders() throws ApiException {
         LOGGER.info("Creating folders...");
 
-        FoldersApi foldersApi = new FoldersApi(client);
+        FoldersApi foldersApi = new FoldersApi(client());
         FolderDTO folderDTO = new FolderDTO();
 
-        folderDTO.setName("Letters");
-        foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
-
-        folderDTO.setName("Invoices");
-        foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
-
-        folderDTO.setName("Documentation");
-        foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
+        String[] folderNames = {"Letters", "Invoices", "Documentation", "APIManuals", "OfficeDocuments"};
 
-        folderDTO.setName("APIManuals");
-        foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
-
-        folderDTO.setName("OfficeDocuments");
-        foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
+        for (String folderName : folderNames) {
+            if (existing.contains(ExistingEntities.Kind.FOLDER, folderName)) {
+                continue;
+            }
+            folderDTO.setName(folderName);
+            foldersApi.createSubFolder(workspaceId, workspaceId, folderDTO);
+        }
     }
 
     private void createTags() throws ApiException {
@@ -384,6 +859,9 @@ public class SampleLoader {
         String[] tagNames = {"internal", "important", "2018", "archive", "API"};
 
         for (String tagName : tagNames) {
+            if (existing.contains(ExistingEntities.Kind.TAG, tagName)) {
+                continue;
+            }
             TagDTO tagDTO = new TagDTO();
             tagDTO.setId(tagName);
             tagDTO.setWorkspaceId(workspaceId);
@@ -391,207 +869,161 @@ public class SampleLoader {
             tags.add(tagDTO);
         }
 
-        new TagsApi(client).createTags(workspaceId, tagListDTO);
+        if (!tags.isEmpty()) {
+            new TagsApi(client()).createTags(workspaceId, tagListDTO);
+        }
     }
 
 
 
-    private List<ACLEntryDTO> generateACLEntries(
+    // ACL entries shared by every ACL the loader sends, never modified
+    static final List<ACLEntryDTO> FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN = aclEntries(
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.FORBIDDEN
+    );
+
+    static final List<ACLEntryDTO> READ_ACCESS_GROUP_5 = aclEntries(
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.READ_ONLY,
+            ACLEntryDTO.ValueEnum.READ_ONLY
+    );
+
+    static final List<ACLEntryDTO> FULL_ACCESS_GROUP_1_AND_2 = aclEntries(
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.FORBIDDEN,
+            ACLEntryDTO.ValueEnum.FORBIDDEN,
+            ACLEntryDTO.ValueEnum.FORBIDDEN
+    );
+
+    static final List<ACLEntryDTO> FULL_ACCESS_GROUP_1_AND_3 = aclEntries(
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.FORBIDDEN,
+            ACLEntryDTO.ValueEnum.FULL_ACCESS,
+            ACLEntryDTO.ValueEnum.FORBIDDEN,
+            ACLEntryDTO.ValueEnum.FORBIDDEN
+    );
+
+    static List<ACLEntryDTO> aclEntries(
             ACLEntryDTO.ValueEnum group1Value,
             ACLEntryDTO.ValueEnum group2Value,
             ACLEntryDTO.ValueEnum group3Value,
             ACLEntryDTO.ValueEnum group4Value,
             ACLEntryDTO.ValueEnum group5Value) {
 
-        List<ACLEntryDTO> acls = new ArrayList<>();
-
-        ACLEntryDTO aclEntryDTOGrp1 = new ACLEntryDTO();
-        aclEntryDTOGrp1.setKey(GROUP_1);
-        aclEntryDTOGrp1.setValue(group1Value);
-        acls.add(aclEntryDTOGrp1);
-
-        ACLEntryDTO aclEntryDTOGrp2 = new ACLEntryDTO();
-        aclEntryDTOGrp2.setKey(GROUP_2);
-        aclEntryDTOGrp2.setValue(group2Value);
-        acls.add(aclEntryDTOGrp2);
-
-        ACLEntryDTO aclEntryDTOGrp3 = new ACLEntryDTO();
-        aclEntryDTOGrp3.setKey(GROUP_3);
-        aclEntryDTOGrp3.setValue(group3Value);
-        acls.add(aclEntryDTOGrp3);
-
-        ACLEntryDTO aclEntryDTOGrp4 = new ACLEntryDTO();
-        aclEntryDTOGrp4.setKey(GROUP_4);
-        aclEntryDTOGrp4.setValue(group4Value);
-        acls.add(aclEntryDTOGrp4);
-
-        ACLEntryDTO aclEntryDTOGrp5 = new ACLEntryDTO();
-        aclEntryDTOGrp5.setKey(GROUP_5);
-        aclEntryDTOGrp5.setValue(group5Value);
-        acls.add(aclEntryDTOGrp5);
-
-        return acls;
-    }
-
-    private List<ACLEntryDTO> generateACLEntriesFullAccessForGroupContainingAdmin() {
-        return generateACLEntries(
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.FORBIDDEN
-        );
-    }
-
-    private List<ACLEntryDTO> generateACLEntriesReadAccessGroup5() {
-        return generateACLEntries(
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.READ_ONLY,
-                ACLEntryDTO.ValueEnum.READ_ONLY
-        );
-    }
-
-    private List<ACLEntryDTO> generateACLEntriesFullAccessGroup1And2() {
-        return generateACLEntries(
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.FORBIDDEN,
-                ACLEntryDTO.ValueEnum.FORBIDDEN,
-                ACLEntryDTO.ValueEnum.FORBIDDEN
-        );
-    }
-
-    private List<ACLEntryDTO> generateACLEntriesFullAccessGroup1And3() {
-        return generateACLEntries(
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.FORBIDDEN,
-                ACLEntryDTO.ValueEnum.FULL_ACCESS,
-                ACLEntryDTO.ValueEnum.FORBIDDEN,
-                ACLEntryDTO.ValueEnum.FORBIDDEN
-        );
-    }
-
-    private void createDocuments() throws ApiException, IOException {
+        List<ACLEntryDTO> acls = new ArrayList<>(5);
+        acls.add(aclEntry(GROUP_1, group1Value));
+        acls.add(aclEntry(GROUP_2, group2Value));
+        acls.add(aclEntry(GROUP_3, group3Value));
+        acls.add(aclEntry(GROUP_4, group4Value));
+        acls.add(aclEntry(GROUP_5, group5Value));
+        return Collections.unmodifiableList(acls);
+    }
+
+    private static ACLEntryDTO aclEntry(String group, ACLEntryDTO.ValueEnum value) {
+        ACLEntryDTO aclEntryDTO = new ACLEntryDTO();
+        aclEntryDTO.setKey(group);
+        aclEntryDTO.setValue(value);
+        return aclEntryDTO;
+    }
+
+    private void createDocuments() throws ApiException, IOException, InterruptedException {
         LOGGER.info("Creating documents...");
 
-        FoldersApi foldersApi = new FoldersApi(client);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessGroup1And3());
+        FoldersApi foldersApi = new FoldersApi(client());
 
         //Workflow model
 
-        WorkflowModelDTO workflowModelDTO = new WorkspacesApi(client)
-                .getWorkflowModelInWorkspace(workspaceId, "My first workflow");
+        WorkflowModelDTO workflowModelDTO = metadata.getWorkflowModel(client(), "My first workflow");
 
-        List<RoleMappingDTO> roleMappingDTOs = resolveDefaultRoles(workflowModelDTO);
+        List<RoleMappingDTO> roleMappingDTOs = metadata.getRoleMapping(client(), "My first workflow");
+
+        CreationTemplate documents = new CreationTemplate(workspaceId)
+                .withWorkflow(workflowModelDTO, roleMappingDTOs)
+                .withAcl(FULL_ACCESS_GROUP_1_AND_3);
 
         // Creation
-        DocumentCreationDTO documentCreationDTO = new DocumentCreationDTO();
-        documentCreationDTO.setReference("LETTER-001");
-        documentCreationDTO.setTitle("My first letter");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("Letter");
-        documentCreationDTO.setDescription("Some letter created with sample loader");
-        documentCreationDTO.setWorkflowModelId(workflowModelDTO.getId());
-        documentCreationDTO.setRoleMapping(roleMappingDTOs);
-
-        documentCreationDTO.setAcl(aclDto);
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":Letters");
-
-        documentCreationDTO.setReference("OFFICE-001");
-        documentCreationDTO.setTitle("My first office writer document");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("OfficeDocuments");
-        documentCreationDTO.setDescription("An office document created with sample loader");
-        documentCreationDTO.setWorkflowModelId(workflowModelDTO.getId());
-        documentCreationDTO.setRoleMapping(roleMappingDTOs);
-
-        documentCreationDTO.setAcl(aclDto);
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":OfficeDocuments");
-
-        documentCreationDTO.setReference("SPREADSHEET-001");
-        documentCreationDTO.setTitle("My first office calcule document");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("SPREADSHEET");
-        documentCreationDTO.setDescription("An office calcule document created with sample loader");
-        documentCreationDTO.setWorkflowModelId(workflowModelDTO.getId());
-        documentCreationDTO.setRoleMapping(roleMappingDTOs);
-
-        documentCreationDTO.setAcl(aclDto);
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":OfficeDocuments");
-
-        documentCreationDTO.setReference("LETTER-002");
-        documentCreationDTO.setTitle("My second letter");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("Letter");
-        documentCreationDTO.setDescription("Some letter created with sample loader");
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":Letters");
-
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
-        documentCreationDTO.setAcl(aclDto);
-
-        documentCreationDTO.setReference("INVOICE-001");
-        documentCreationDTO.setTitle("My first invoice");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("Invoice");
-
-        documentCreationDTO.setDescription("Some invoice created with sample loader");
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":Invoices");
-
-        documentCreationDTO.setReference("INVOICE-002");
-        documentCreationDTO.setTitle("A second invoice");
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":Invoices");
-
-        documentCreationDTO.setReference("USER-MAN-001");
-        documentCreationDTO.setTitle("User documentation");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("UserManuals");
-        documentCreationDTO.setDescription("Some end-user documentation");
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":Documentation");
-
-        aclDto.setGroupEntries(generateACLEntriesReadAccessGroup5());
-        documentCreationDTO.setReference("API-001");
-        documentCreationDTO.setTitle("API V1.0");
-        documentCreationDTO.setWorkspaceId(workspaceId);
-        documentCreationDTO.setTemplateId("APIDocuments");
-        documentCreationDTO.setAcl(aclDto);
-        documentCreationDTO.setDescription("First version of API description ");
-
-        foldersApi.createDocumentMasterInFolder(workspaceId, documentCreationDTO, workspaceId + ":APIManuals");
+        CreationTemplate letters = documents.withTemplateId("Letter").withDescription("Some letter created with sample loader");
+        createDocument(foldersApi,
+                letters.document("LETTER-001", "My first letter"), workspaceId + ":Letters");
+
+        createDocument(foldersApi,
+                documents.withTemplateId("OfficeDocuments").withDescription("An office document created with sample loader")
+                        .document("OFFICE-001", "My first office writer document"), workspaceId + ":OfficeDocuments");
+
+        createDocument(foldersApi,
+                documents.withTemplateId("SPREADSHEET").withDescription("An office calcule document created with sample loader")
+                        .document("SPREADSHEET-001", "My first office calcule document"), workspaceId + ":OfficeDocuments");
+
+        createDocument(foldersApi,
+                letters.document("LETTER-002", "My second letter"), workspaceId + ":Letters");
+
+        documents = documents.withAcl(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        CreationTemplate invoices = documents.withTemplateId("Invoice").withDescription("Some invoice created with sample loader");
+        createDocument(foldersApi,
+                invoices.document("INVOICE-001", "My first invoice"), workspaceId + ":Invoices");
+        createDocument(foldersApi,
+                invoices.document("INVOICE-002", "A second invoice"), workspaceId + ":Invoices");
+
+        createDocument(foldersApi,
+                documents.withTemplateId("UserManuals").withDescription("Some end-user documentation")
+                        .document("USER-MAN-001", "User documentation"), workspaceId + ":Documentation");
+
+        createDocument(foldersApi,
+                documents.withAcl(READ_ACCESS_GROUP_5).withTemplateId("APIDocuments").withDescription("First version of API description ")
+                        .document("API-001", "API V1.0"), workspaceId + ":APIManuals");
+
+        // Documents checked in by the interrupted run of a resumed load, or found by an idempotent one, are done
+        String[][] files = {
+                {"LETTER-001", "letter-001.docx"},
+                {"LETTER-002", "letter-002.docx"},
+                {"INVOICE-001", "invoice-001.xlsx"},
+                {"INVOICE-002", "invoice-002.xlsx"},
+                {"USER-MAN-001", "user-man-001.txt"},
+                {"API-001", "API-001"},
+                {"OFFICE-001", "test_officeWriter.odt"},
+                {"SPREADSHEET-001", "spreadsheet.ods"}
+        };
+        List<String[]> pending = new ArrayList<>();
+        for (String[] file : files) {
+            if (isPending("createDocuments", "checkIn " + file[0]) && !existingDocuments.contains(file[0])) {
+                pending.add(file);
+            }
+        }
 
         LOGGER.info("Uploading document files...");
         // Upload
-        DocumentIterationDTO documentIterationDTO = new DocumentIterationDTO();
-        documentIterationDTO.setWorkspaceId(workspaceId);
-        documentIterationDTO.setVersion("A");
-        documentIterationDTO.setIteration(1);
-
-        documentIterationDTO.setDocumentMasterId("LETTER-001");
-
-        DocumentBinaryApi documentBinaryApi = new DocumentBinaryApi(client);
-
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "LETTER-001", "A", 1, SampleLoaderUtils.getFile("letter-001.docx"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "LETTER-002", "A", 1, SampleLoaderUtils.getFile("letter-002.docx"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "INVOICE-001", "A", 1, SampleLoaderUtils.getFile("invoice-001.xlsx"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "INVOICE-002", "A", 1, SampleLoaderUtils.getFile("invoice-002.xlsx"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "USER-MAN-001", "A", 1, SampleLoaderUtils.getFile("user-man-001.txt"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "API-001", "A", 1, SampleLoaderUtils.getFile("API-001"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "OFFICE-001", "A", 1, SampleLoaderUtils.getFile("test_officeWriter.odt"));
-        documentBinaryApi.uploadDocumentFiles(workspaceId, "SPREADSHEET-001", "A", 1, SampleLoaderUtils.getFile("spreadsheet.ods"));
+        try (UploadPipeline uploads = new UploadPipeline(client(), workspaceId, uploadConcurrency, uploadAccounting)) {
+            for (String[] file : pending) {
+                uploads.documentFile(file[0], "A", 1, file[1]);
+            }
+            uploads.join();
+        }
 
         // Check in
         LOGGER.info("Checking in documents...");
-        DocumentApi documentApi = new DocumentApi(client);
-        documentApi.checkInDocument(workspaceId, "LETTER-001", "A");
-        documentApi.checkInDocument(workspaceId, "LETTER-002", "A");
-        documentApi.checkInDocument(workspaceId, "INVOICE-001", "A");
-        documentApi.checkInDocument(workspaceId, "INVOICE-002", "A");
-        documentApi.checkInDocument(workspaceId, "USER-MAN-001", "A");
-        documentApi.checkInDocument(workspaceId, "API-001", "A");
-        documentApi.checkInDocument(workspaceId, "OFFICE-001", "A");
-        documentApi.checkInDocument(workspaceId, "SPREADSHEET-001", "A");
+        DocumentApi documentApi = new DocumentApi(client());
+        for (String[] file : pending) {
+            documentApi.checkInDocument(workspaceId, file[0], "A");
+            journal.stepDone("createDocuments", "checkIn " + file[0]);
+        }
+    }
+
+    private void createDocument(FoldersApi foldersApi, DocumentCreationDTO document, String folder) throws ApiException {
+        try {
+            foldersApi.createDocumentMasterInFolder(workspaceId, document, folder);
+        } catch (ApiException e) {
+            alreadyCreated(e, "Document " + document.getReference());
+            if (!journal.isResumed()) {
+                existingDocuments.add(document.getReference());
+            }
+        }
     }
 
 
@@ -602,7 +1034,7 @@ public class SampleLoader {
         c.setTime(new Date());
         c.add(Calendar.DATE, 15);
 
-        MilestonesApi milestonesApi = new MilestonesApi(client);
+        MilestonesApi milestonesApi = new MilestonesApi(client());
 
         MilestoneDTO milestoneDTO = new MilestoneDTO();
         milestoneDTO.setWorkspaceId(workspaceId);
@@ -610,33 +1042,53 @@ public class SampleLoader {
         milestoneDTO.setDescription("First release");
         milestoneDTO.setDueDate(c.getTime());
 
-        milestonesApi.createMilestone(workspaceId, milestoneDTO);
+        createMilestone(milestonesApi, milestoneDTO);
 
         c.add(Calendar.DATE, 90);
         milestoneDTO.setTitle("2.0");
         milestoneDTO.setDescription("Second release");
         milestoneDTO.setDueDate(c.getTime());
-        milestonesApi.createMilestone(workspaceId, milestoneDTO);
+        createMilestone(milestonesApi, milestoneDTO);
+    }
+
+    private void createMilestone(MilestonesApi milestonesApi, MilestoneDTO milestoneDTO) throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.MILESTONE, milestoneDTO.getTitle())) {
+            return;
+        }
+        try {
+            milestoneIds.add(milestonesApi.createMilestone(workspaceId, milestoneDTO).getId());
+        } catch (ApiException e) {
+            alreadyCreated(e, "Milestone " + milestoneDTO.getTitle());
+        }
     }
 
-    private void setMilestoneAcl() throws ApiException {
+    private void setMilestoneAcl() throws ApiException, IOException, InterruptedException {
         LOGGER.info("create access for milestones");
-        
-        MilestonesApi milestonesApi = new MilestonesApi(client);
-        List<MilestoneDTO> milestoneDTOs = milestonesApi.getMilestones(workspaceId);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
 
-        for (MilestoneDTO milestoneDTO : milestoneDTOs) {
-            milestonesApi.updateMilestoneACL(workspaceId, milestoneDTO.getId(), aclDto);
-            LOGGER.info("updated milestone:" + milestoneDTO.getId());
+        final MilestonesApi milestonesApi = new MilestonesApi(client());
+        List<Integer> ids = new ArrayList<>(milestoneIds);
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            ids.clear();
+            for (MilestoneDTO milestoneDTO : milestonesApi.getMilestones(workspaceId)) {
+                ids.add(milestoneDTO.getId());
+            }
         }
+        final ACLDTO aclDto = new ACLDTO();
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        updateAcls("setMilestoneAcl", "milestone", ids, new AclUpdate<Integer>() {
+            @Override
+            public void update(Integer id) throws ApiException {
+                milestonesApi.updateMilestoneACL(workspaceId, id, aclDto);
+            }
+        });
     }
 
     private void createRequests() throws ApiException {
         LOGGER.info("Creating requests...");
         
-        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client);
+        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client());
         ChangeRequestDTO changeRequestDTO = new ChangeRequestDTO();
         changeRequestDTO.setWorkspaceId(workspaceId);
 
@@ -644,19 +1096,30 @@ public class SampleLoader {
         changeRequestDTO.setDescription("Something needs to be corrected");
         changeRequestDTO.setCategory(ChangeRequestDTO.CategoryEnum.CORRECTIVE);
         changeRequestDTO.setAssignee("joe");
-        changeItemsApi.createRequest(workspaceId, changeRequestDTO);
+        createRequest(changeItemsApi, changeRequestDTO);
 
         changeRequestDTO.setName("REQ-002");
         changeRequestDTO.setDescription("Something needs to be perfected");
         changeRequestDTO.setAssignee("bill");
         changeRequestDTO.setCategory(ChangeRequestDTO.CategoryEnum.PERFECTIVE);
-        changeItemsApi.createRequest(workspaceId, changeRequestDTO);
+        createRequest(changeItemsApi, changeRequestDTO);
+    }
+
+    private void createRequest(ChangeItemsApi changeItemsApi, ChangeRequestDTO changeRequestDTO) throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.REQUEST, changeRequestDTO.getName())) {
+            return;
+        }
+        try {
+            requestIds.add(changeItemsApi.createRequest(workspaceId, changeRequestDTO).getId());
+        } catch (ApiException e) {
+            alreadyCreated(e, "Request " + changeRequestDTO.getName());
+        }
     }
 
     private void createIssues() throws ApiException {
         LOGGER.info("Creating issues...");
         
-        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client);
+        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client());
         ChangeIssueDTO changeIssueDTO = new ChangeIssueDTO();
         changeIssueDTO.setWorkspaceId(workspaceId);
 
@@ -664,69 +1127,154 @@ public class SampleLoader {
         changeIssueDTO.setDescription("Something is wrong");
         changeIssueDTO.setPriority(ChangeIssueDTO.PriorityEnum.HIGH);
         changeIssueDTO.setAssignee("bill");
-        changeItemsApi.createIssue(workspaceId, changeIssueDTO);
+        createIssue(changeItemsApi, changeIssueDTO);
 
 
         changeIssueDTO.setName("ISSUE-002");
         changeIssueDTO.setDescription("Something is terribly wrong");
         changeIssueDTO.setPriority(ChangeIssueDTO.PriorityEnum.EMERGENCY);
         changeIssueDTO.setAssignee("joe");
-        changeItemsApi.createIssue(workspaceId, changeIssueDTO);
+        createIssue(changeItemsApi, changeIssueDTO);
+    }
+
+    private void createIssue(ChangeItemsApi changeItemsApi, ChangeIssueDTO changeIssueDTO) throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.ISSUE, changeIssueDTO.getName())) {
+            return;
+        }
+        try {
+            issueIds.add(changeItemsApi.createIssue(workspaceId, changeIssueDTO).getId());
+        } catch (ApiException e) {
+            alreadyCreated(e, "Issue " + changeIssueDTO.getName());
+        }
     }
 
-    private void setIssuesAcl() throws ApiException {
+    private void setIssuesAcl() throws ApiException, IOException, InterruptedException {
         LOGGER.info("create access for issues");
-        
-        ChangeItemsApi changeItemApi = new ChangeItemsApi(client);
-        List<ChangeIssueDTO> changeIssueDTOs = changeItemApi.getIssues(workspaceId);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
-        
-        for (ChangeIssueDTO changeIssueDTO : changeIssueDTOs) {
-            changeItemApi.updateChangeIssueACL(workspaceId, changeIssueDTO.getId(), aclDto);
+
+        final ChangeItemsApi changeItemApi = new ChangeItemsApi(client());
+        List<Integer> ids = new ArrayList<>(issueIds);
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            ids.clear();
+            for (ChangeIssueDTO changeIssueDTO : changeItemApi.getIssues(workspaceId)) {
+                ids.add(changeIssueDTO.getId());
+            }
         }
+        final ACLDTO aclDto = new ACLDTO();
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        updateAcls("setIssuesAcl", "issue", ids, new AclUpdate<Integer>() {
+            @Override
+            public void update(Integer id) throws ApiException {
+                changeItemApi.updateChangeIssueACL(workspaceId, id, aclDto);
+            }
+        });
     }
 
-    private void setRequestsAcl() throws ApiException {
+    private void setRequestsAcl() throws ApiException, IOException, InterruptedException {
         LOGGER.info("create access for request");
-        
-        ChangeItemsApi changeItemApi = new ChangeItemsApi(client);
-        List<ChangeRequestDTO> changeRequestDTOs = changeItemApi.getRequests(workspaceId);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
-        
-        for (ChangeRequestDTO changeRequestDTO : changeRequestDTOs) {
-            changeItemApi.updateChangeRequestACL(workspaceId, changeRequestDTO.getId(), aclDto);
+
+        final ChangeItemsApi changeItemApi = new ChangeItemsApi(client());
+        List<Integer> ids = new ArrayList<>(requestIds);
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            ids.clear();
+            for (ChangeRequestDTO changeRequestDTO : changeItemApi.getRequests(workspaceId)) {
+                ids.add(changeRequestDTO.getId());
+            }
         }
+        final ACLDTO aclDto = new ACLDTO();
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        updateAcls("setRequestsAcl", "request", ids, new AclUpdate<Integer>() {
+            @Override
+            public void update(Integer id) throws ApiException {
+                changeItemApi.updateChangeRequestACL(workspaceId, id, aclDto);
+            }
+        });
     }
 
-    private void setOrdersAcl() throws ApiException {
+    private void setOrdersAcl() throws ApiException, IOException, InterruptedException {
         LOGGER.info("create access for orders");
-        
-        ChangeItemsApi changeItemApi = new ChangeItemsApi(client);
-        List<ChangeOrderDTO> changeOrderDTOs = changeItemApi.getOrders(workspaceId);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
-        
-        for (ChangeOrderDTO changeOrderDTO : changeOrderDTOs) {
-            changeItemApi.updateChangeOrderACL(workspaceId, changeOrderDTO.getId(), aclDto);
+
+        final ChangeItemsApi changeItemApi = new ChangeItemsApi(client());
+        List<Integer> ids = new ArrayList<>(orderIds);
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            ids.clear();
+            for (ChangeOrderDTO changeOrderDTO : changeItemApi.getOrders(workspaceId)) {
+                ids.add(changeOrderDTO.getId());
+            }
         }
+        final ACLDTO aclDto = new ACLDTO();
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        updateAcls("setOrdersAcl", "order", ids, new AclUpdate<Integer>() {
+            @Override
+            public void update(Integer id) throws ApiException {
+                changeItemApi.updateChangeOrderACL(workspaceId, id, aclDto);
+            }
+        });
+    }
+
+    /**
+     * Sends the ACL updates of the given entities concurrently, on the pool shared by the ACL
+     * phases. The server creates these entities from their name and description only, the ACL of
+     * their DTO is ignored by the creation and can only be set by their ACL resource. The ids come
+     * from the creations of this run, or from a listing when a resumed run may have created only
+     * some of them; updates journalled by the interrupted run are not sent again.
+     */
+    private <T> void updateAcls(final String phase, String kind, List<T> ids, final AclUpdate<T> update)
+            throws ApiException, IOException, InterruptedException {
+        int updated = 0;
+        try (TaskBatch batch = new TaskBatch(kind + "-acls", aclConcurrency, aclExecutor)) {
+            for (final T id : ids) {
+                if (!isPending(phase, "acl " + id)) {
+                    continue;
+                }
+                batch.submit(kind + "-" + id, new TaskBatch.Task() {
+                    @Override
+                    public void run() throws ApiException, IOException {
+                        update.update(id);
+                        journal.stepDone(phase, "acl " + id);
+                    }
+                });
+                updated++;
+            }
+            batch.awaitOrThrow();
+        }
+        LOGGER.info(updated + " " + kind + " ACLs updated" + (updated < ids.size() ? ", " + (ids.size() - updated)
+                + " already updated by the interrupted run" : ""));
     }
 
 
     private void updateAffectedPartInOrder() throws ApiException {
         LOGGER.info("Affect some parts to orders");
         
-        ChangeItemsApi changeItemApi = new ChangeItemsApi(client);
-        List<ChangeOrderDTO> changeOrderDTOs = changeItemApi.getOrders(workspaceId);
-
-        WorkspacesApi workspacesApi = new WorkspacesApi(client);
+        ChangeItemsApi changeItemApi = new ChangeItemsApi(client());
+        List<Integer> changeOrderIds = new ArrayList<>(orderIds);
+        List<ChangeRequestDTO> changeRequestDTOs = new ArrayList<>();
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            changeOrderIds.clear();
+            for (ChangeOrderDTO changeOrderDTO : changeItemApi.getOrders(workspaceId)) {
+                changeOrderIds.add(changeOrderDTO.getId());
+            }
+            changeRequestDTOs.addAll(new WorkspacesApi(client()).getRequests(workspaceId));
+        } else {
+            for (Integer requestId : requestIds) {
+                ChangeRequestDTO changeRequestDTO = new ChangeRequestDTO();
+                changeRequestDTO.setWorkspaceId(workspaceId);
+                changeRequestDTO.setId(requestId);
+                changeRequestDTOs.add(changeRequestDTO);
+            }
+        }
 
-        PartRevisionDTO wheelRevision = workspacesApi.getLatestPartRevision(workspaceId, "WHEEL-001");
+        PartRevisionDTO wheelRevision = revisions.getLatestPartRevision(client(), "WHEEL-001");
         PartIterationDTO wheelIteration = LastIterationHelper.getLastIteration(wheelRevision);
 
         //affect parts
-        PartRevisionDTO amortizerRevision = new WorkspacesApi(client).getLatestPartRevision(workspaceId, "AMORTIZER-001");
+        PartRevisionDTO amortizerRevision = revisions.getLatestPartRevision(client(), "AMORTIZER-001");
         PartIterationDTO amortizerIteration = LastIterationHelper.getLastIteration(amortizerRevision);
 
         List<PartIterationDTO> iterationDTOs = new ArrayList<>();
@@ -736,25 +1284,24 @@ public class SampleLoader {
         PartIterationListDTO partIterationListDTO = new PartIterationListDTO();
         partIterationListDTO.setParts(iterationDTOs);
 
-        for (ChangeOrderDTO changeOrderDTO : changeOrderDTOs) {
-            changeItemApi.saveChangeOrderAffectedParts(workspaceId, changeOrderDTO.getId(), partIterationListDTO);
+        for (Integer changeOrderId : changeOrderIds) {
+            changeItemApi.saveChangeOrderAffectedParts(workspaceId, changeOrderId, partIterationListDTO);
         }
 
         LOGGER.info("Affect some requests to orders");
         //affect request
-        List<ChangeRequestDTO> changeRequestDTOs = workspacesApi.getRequests(workspaceId);
         ChangeRequestListDTO changeRequestListDTO = new ChangeRequestListDTO();
         changeRequestListDTO.setRequests(changeRequestDTOs);
 
-        for (ChangeOrderDTO changeOrderDTO : changeOrderDTOs) {
-            changeItemApi.saveAffectedRequests(workspaceId, changeOrderDTO.getId(), changeRequestListDTO);
+        for (Integer changeOrderId : changeOrderIds) {
+            changeItemApi.saveAffectedRequests(workspaceId, changeOrderId, changeRequestListDTO);
         }
     }
 
     private void createOrders() throws ApiException {
         LOGGER.info("Creating orders...");
 
-        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client);
+        ChangeItemsApi changeItemsApi = new ChangeItemsApi(client());
         ChangeOrderDTO changeOrderDTO = new ChangeOrderDTO();
         changeOrderDTO.setWorkspaceId(workspaceId);
 
@@ -763,38 +1310,63 @@ public class SampleLoader {
         changeOrderDTO.setCategory(ChangeOrderDTO.CategoryEnum.PERFECTIVE);
         changeOrderDTO.setAssignee("mickey");
         changeOrderDTO.setPriority(ChangeOrderDTO.PriorityEnum.EMERGENCY);
-        changeItemsApi.createOrder(workspaceId, changeOrderDTO);
+        createOrder(changeItemsApi, changeOrderDTO);
 
         changeOrderDTO.setName("ORDER-002");
         changeOrderDTO.setDescription("Order for some parts");
         changeOrderDTO.setAssignee("rob");
         changeOrderDTO.setPriority(ChangeOrderDTO.PriorityEnum.MEDIUM);
         changeOrderDTO.setCategory(ChangeOrderDTO.CategoryEnum.OTHER);
-        changeItemsApi.createOrder(workspaceId, changeOrderDTO);
+        createOrder(changeItemsApi, changeOrderDTO);
     }
 
-    private void setWorkFlowACL() throws ApiException {
-        LOGGER.info("Setting acl for created workflows...");
+    private void createOrder(ChangeItemsApi changeItemsApi, ChangeOrderDTO changeOrderDTO) throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.ORDER, changeOrderDTO.getName())) {
+            return;
+        }
+        try {
+            orderIds.add(changeItemsApi.createOrder(workspaceId, changeOrderDTO).getId());
+        } catch (ApiException e) {
+            alreadyCreated(e, "Order " + changeOrderDTO.getName());
+        }
+    }
 
-        WorkflowModelsApi workflowModelsApi = new WorkflowModelsApi(client);
-        List<WorkflowModelDTO> workflowModelDTOs = workflowModelsApi.getWorkflowModelsInWorkspace(workspaceId);
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
+    private void setWorkFlowACL() throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Setting acl for created workflows...");
 
-        for (WorkflowModelDTO workflowModelDTO : workflowModelDTOs) {
-            workflowModelsApi.updateWorkflowModelACL(workspaceId, workflowModelDTO.getId(), aclDto);
-            LOGGER.info("workflow with id " + workflowModelDTO.getId() + " was updated...");
+        final WorkflowModelsApi workflowModelsApi = new WorkflowModelsApi(client());
+        List<String> ids = new ArrayList<>(workflowModelIds);
+        if (journal.isResumed()) {
+            // The interrupted run may have created some of them, the listing has them all
+            ids.clear();
+            for (WorkflowModelDTO workflowModelDTO : workflowModelsApi.getWorkflowModelsInWorkspace(workspaceId)) {
+                ids.add(workflowModelDTO.getId());
+            }
         }
+        final ACLDTO aclDto = new ACLDTO();
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
+
+        updateAcls("setWorkFlowACL", "workflow", ids, new AclUpdate<String>() {
+            @Override
+            public void update(String id) throws ApiException {
+                workflowModelsApi.updateWorkflowModelACL(workspaceId, id, aclDto);
+                metadata.workflowModelChanged(id);
+            }
+        });
     }
 
     private void createRolesAndWorkflow() throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.WORKFLOW_MODEL, "My first workflow")) {
+            LOGGER.info("Roles and workflow already exist");
+            return;
+        }
         LOGGER.info("Creating roles...");
 
-        RolesApi rolesApi = new RolesApi(client);
+        RolesApi rolesApi = new RolesApi(client());
         // Roles
         List<UserDTO> designers = new ArrayList<>();
         List<UserDTO> technicians = new ArrayList<>();
-        List<UserGroupDTO> groupsAvailable = new WorkspacesApi(client).getGroups(workspaceId);
+        List<UserGroupDTO> groupsAvailable = metadata.getGroups(client());
 
         UserDTO rob = new UserDTO();
         rob.setWorkspaceId(workspaceId);
@@ -806,42 +1378,22 @@ public class SampleLoader {
         joe.setLogin("joe");
         technicians.add(joe);
 
-        RoleDTO roleDTO = new RoleDTO();
-        roleDTO.setWorkspaceId(workspaceId);
-
-        roleDTO.setName("designers");
-        roleDTO.setDefaultAssignedUsers(designers);
-        RoleDTO designerRole = rolesApi.createRole(workspaceId, roleDTO);
-
-        roleDTO.setName("technicians");
-        roleDTO.setDefaultAssignedUsers(technicians);
-        RoleDTO technicianRole = rolesApi.createRole(workspaceId, roleDTO);
+        RoleDTO designerRole = createRole(rolesApi, "designers", designers, null);
+        RoleDTO technicianRole = createRole(rolesApi, "technicians", technicians, null);
 
-        RoleDTO roleGroupDTO = new RoleDTO();
-        roleGroupDTO.setWorkspaceId(workspaceId);
         List<UserGroupDTO> tmpArrays = new ArrayList<>();
-
-        roleGroupDTO.setDefaultAssignedUsers(null);
         tmpArrays.add(groupsAvailable.get(0));
-
-        roleGroupDTO.setName("ceo");
-        roleGroupDTO.setDefaultAssignedGroups(tmpArrays);
-        RoleDTO ceo = rolesApi.createRole(workspaceId, roleGroupDTO);
+        RoleDTO ceo = createRole(rolesApi, "ceo", null, tmpArrays);
 
         tmpArrays = new ArrayList<>();
         tmpArrays.add(groupsAvailable.get(1));
         tmpArrays.add(groupsAvailable.get(2));
-
-        roleGroupDTO.setName("engineers");
-        roleGroupDTO.setDefaultAssignedGroups(tmpArrays);
-        RoleDTO engineers = rolesApi.createRole(workspaceId, roleGroupDTO);
+        RoleDTO engineers = createRole(rolesApi, "engineers", null, tmpArrays);
 
         tmpArrays = new ArrayList<>();
         tmpArrays.add(groupsAvailable.get(3));
-
-        roleGroupDTO.setName("support");
-        roleGroupDTO.setDefaultAssignedGroups(tmpArrays);
-        RoleDTO support = rolesApi.createRole(workspaceId, roleGroupDTO);
+        RoleDTO support = createRole(rolesApi, "support", null, tmpArrays);
+        metadata.rolesChanged();
 
         // Workflow
         LOGGER.info("Creating workflow...");
@@ -898,18 +1450,41 @@ public class SampleLoader {
         workflowModelDTO.setFinalLifeCycleState("Success");
         workflowModelDTO.setId("My first workflow");
 
-        new WorkflowModelsApi(client).createWorkflowModel(workspaceId, workflowModelDTO);
+        createWorkflowModel(workflowModelDTO);
+    }
+
+
+    private RoleDTO createRole(RolesApi rolesApi, String name, List<UserDTO> users, List<UserGroupDTO> groups)
+            throws ApiException {
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setWorkspaceId(workspaceId);
+        roleDTO.setName(name);
+        roleDTO.setDefaultAssignedUsers(users);
+        roleDTO.setDefaultAssignedGroups(groups);
+        try {
+            return rolesApi.createRole(workspaceId, roleDTO);
+        } catch (ApiException e) {
+            // The tasks only need the role name
+            alreadyCreated(e, "Role " + name);
+            return roleDTO;
+        }
     }
 
+    private void createWorkflowModel(WorkflowModelDTO workflowModelDTO) throws ApiException {
+        try {
+            workflowModelIds.add(new WorkflowModelsApi(client()).createWorkflowModel(workspaceId, workflowModelDTO).getId());
+        } catch (ApiException e) {
+            alreadyCreated(e, "Workflow model " + workflowModelDTO.getId());
+        }
+        metadata.workflowModelChanged(workflowModelDTO.getId());
+    }
 
     private void createPartTemplates() throws ApiException {
         LOGGER.info("Creating part templates...");
 
-        PartTemplatesApi partTemplatesApi = new PartTemplatesApi(client);
+        PartTemplatesApi partTemplatesApi = new PartTemplatesApi(client());
         PartTemplateCreationDTO partTemplateCreationDTO = new PartTemplateCreationDTO();
         partTemplateCreationDTO.setWorkspaceId(workspaceId);
-        partTemplateCreationDTO.setReference("SEATS");
-        partTemplateCreationDTO.setMask("SEAT-###");
         partTemplateCreationDTO.setAttributesLocked(true);
 
         List<InstanceAttributeTemplateDTO> attributes = new ArrayList<>();
@@ -922,80 +1497,62 @@ public class SampleLoader {
         attributes.add(weight);
 
         partTemplateCreationDTO.setAttributeTemplates(attributes);
-        partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
 
-        partTemplateCreationDTO.setReference("ENGINES");
-        partTemplateCreationDTO.setMask("ENGINE-###");
-        partTemplateCreationDTO.setAttributeTemplates(attributes);
-        partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
-
-        partTemplateCreationDTO.setReference("DOOR");
-        partTemplateCreationDTO.setMask("DOOR-###");
-        partTemplateCreationDTO.setAttributeTemplates(attributes);
-        partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
-
-        partTemplateCreationDTO.setReference("WHEEL");
-        partTemplateCreationDTO.setMask("WHEEL-###");
-        partTemplateCreationDTO.setAttributeTemplates(attributes);
-        partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
-
-        partTemplateCreationDTO.setReference("AMORTIZER");
-        partTemplateCreationDTO.setMask("AMORTIZER-###");
-        partTemplateCreationDTO.setAttributeTemplates(attributes);
-        partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
+        String[][] templates = {
+                {"SEATS", "SEAT-###"},
+                {"ENGINES", "ENGINE-###"},
+                {"DOOR", "DOOR-###"},
+                {"WHEEL", "WHEEL-###"},
+                {"AMORTIZER", "AMORTIZER-###"}
+        };
+
+        for (String[] template : templates) {
+            if (existing.contains(ExistingEntities.Kind.PART_TEMPLATE, template[0])) {
+                continue;
+            }
+            partTemplateCreationDTO.setReference(template[0]);
+            partTemplateCreationDTO.setMask(template[1]);
+            partTemplatesApi.createPartMasterTemplate(workspaceId, partTemplateCreationDTO);
+        }
     }
 
 
     private void createCarProduct() throws ApiException, IOException, InterruptedException {
-        LOGGER.info("Creating car product...");
-
-        PartsApi partsApi = new PartsApi(client);
-        ProductsApi productsApi = new ProductsApi(client);
-        PartCreationDTO part = new PartCreationDTO();
+        if (partExistedBefore("CAR-001", "A")) {
+            LOGGER.info("Car product already exists");
+            return;
+        }
 
-        part.setWorkspaceId(workspaceId);
-        part.setDescription("Sample part create with sample loader");
+        LOGGER.info("Creating car product...");
 
-        //ACLS set up
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessGroup1And2());
+        PartsApi partsApi = new PartsApi(client());
+        ProductsApi productsApi = new ProductsApi(client());
+        CreationTemplate parts = carPartsTemplate();
 
-        //Workflow model creation
-        WorkflowModelDTO workflowModelDTO = new WorkspacesApi(client)
-                .getWorkflowModelInWorkspace(workspaceId, "My first workflow");
-        List<RoleMappingDTO> roleMappingDTOs = resolveDefaultRoles(workflowModelDTO);
+        // Parts checked in by the interrupted run of a resumed load are done
+        final String phase = "createCarProduct";
+        List<String> pending = new ArrayList<>();
+        for (String partNumber : new String[]{"SEAT-010", "SEAT-020", "ENGINE-050", "ENGINE-100", "CAR-001"}) {
+            if (isPending(phase, "checkIn " + partNumber)) {
+                pending.add(partNumber);
+            }
+        }
 
         //Parts creations
-        part.setTemplateId("SEATS");
-        part.setNumber("SEAT-010");
-        part.setName("Front seat");
-        part.setWorkflowModelId(workflowModelDTO.getId());
-        part.setRoleMapping(roleMappingDTOs);
-        part.setAcl(aclDto);
-        PartRevisionDTO frontSeat = partsApi.createNewPart(workspaceId, part);
-        addAttributes(partsApi, frontSeat);
-        part.setNumber("SEAT-020");
-        part.setName("Back seat");
-        PartRevisionDTO backSeat = partsApi.createNewPart(workspaceId, part);
-        addAttributes(partsApi, backSeat);
-
-        part.setTemplateId("ENGINES");
-        part.setNumber("ENGINE-050");
-        part.setName("50cc engine");
-        PartRevisionDTO engine50 = partsApi.createNewPart(workspaceId, part);
-        addAttributes(partsApi, engine50);
-        part.setNumber("ENGINE-100");
-        part.setName("100cc engine");
-        PartRevisionDTO engine100 = partsApi.createNewPart(workspaceId, part);
-        addAttributes(partsApi, engine100);
+        CreationTemplate seats = parts.withTemplateId("SEATS");
+        CreationTemplate engines = parts.withTemplateId("ENGINES");
+        for (PartCreationDTO part : new PartCreationDTO[]{
+                seats.part("SEAT-010", "Front seat"),
+                seats.part("SEAT-020", "Back seat"),
+                engines.part("ENGINE-050", "50cc engine"),
+                engines.part("ENGINE-100", "100cc engine")}) {
+            if (pending.contains(part.getNumber())) {
+                addAttributes(partsApi, createPart(partsApi, part));
+            }
+        }
 
         // Create an assembly
         String assemblyNumber = "CAR-001";
-        part.setNumber(assemblyNumber);
-        part.setName("Car assembly");
-        part.setTemplateId(null);
-        PartRevisionDTO assembly = partsApi.createNewPart(workspaceId, part);
-        PartIterationDTO lastIteration = LastIterationHelper.getLastIteration(assembly);
 
         List<PartUsageLinkDTO> links = new ArrayList<>();
 
@@ -1092,47 +1649,51 @@ public class SampleLoader {
         engineLink.setCadInstances(engineCadInstances);
         engineSubstitute.setCadInstances(engineCadInstances);
 
-        lastIteration.setComponents(links);
-        lastIteration.setIterationNote("Creating assembly");
+        if (pending.contains(assemblyNumber)) {
+            PartRevisionDTO assembly = createPart(partsApi, parts.part(assemblyNumber, "Car assembly"));
+            PartIterationDTO lastIteration = LastIterationHelper.getLastIteration(assembly);
+            lastIteration.setComponents(links);
+            lastIteration.setIterationNote("Creating assembly");
 
-        partsApi.updatePartIteration(workspaceId, assemblyNumber, "A", 1, lastIteration);
+            revisions.put(partsApi.updatePartIteration(workspaceId, assemblyNumber, "A", 1, lastIteration));
+        }
 
         // Upload 3D files
         LOGGER.info("Uploading 3D files...");
 
-        PartIterationDTO partIterationDTO = new PartIterationDTO();
-        partIterationDTO.setWorkspaceId(workspaceId);
-        partIterationDTO.setVersion("A");
-        partIterationDTO.setIteration(1);
-
-        partIterationDTO.setNumber("SEAT-010");
-        uploadNativeCADFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-FrontSeat.obj"));
-        uploadAttachedFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-FrontSeat.mtl"));
-
-        partIterationDTO.setNumber("SEAT-020");
-        uploadNativeCADFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-BackSeat.obj"));
-        uploadAttachedFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-BackSeat.mtl"));
-
-        partIterationDTO.setNumber("ENGINE-050");
-        uploadNativeCADFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-OutboardMotor.obj"));
-        uploadAttachedFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-OutboardMotor.mtl"));
-
-        partIterationDTO.setNumber("ENGINE-100");
-        uploadNativeCADFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-TrollingMotor.obj"));
-        uploadAttachedFile(partIterationDTO, client, SampleLoaderUtils.getFile("BassBoat-TrollingMotor.mtl"));
-
-        LOGGER.info("Waiting for conversion...");
-        // Let the conversion finish
-        Thread.sleep(SLEEPTIME);
+        String[][] files = {
+                {"SEAT-010", "BassBoat-FrontSeat"},
+                {"SEAT-020", "BassBoat-BackSeat"},
+                {"ENGINE-050", "BassBoat-OutboardMotor"},
+                {"ENGINE-100", "BassBoat-TrollingMotor"}
+        };
+
+        ConversionAwaiter conversions = new ConversionAwaiter(client(), workspaceId, conversionTimeout);
+        try (UploadPipeline uploads = new UploadPipeline(client(), workspaceId, uploadConcurrency, uploadAccounting)) {
+            uploads.setConversions(conversions);
+            for (String[] file : files) {
+                if (pending.contains(file[0])) {
+                    uploads.nativeCADFile(file[0], "A", 1, file[1] + ".obj");
+                    uploads.attachedFile(file[0], "A", 1, file[1] + ".mtl");
+                }
+            }
+            uploads.join();
+        }
 
-        LOGGER.info("Checking in parts...");
+        LOGGER.info("Waiting for conversion, checking in converted parts...");
 
-        PartApi partApi = new PartApi(client);
-        partApi.checkIn(workspaceId, "SEAT-010", "A");
-        partApi.checkIn(workspaceId, "SEAT-020", "A");
-        partApi.checkIn(workspaceId, "ENGINE-050", "A");
-        partApi.checkIn(workspaceId, "ENGINE-100", "A");
-        partApi.checkIn(workspaceId, "CAR-001", "A");
+        final PartApi partApi = new PartApi(client());
+        conversions.await(new ConversionAwaiter.Listener() {
+            @Override
+            public void converted(String partNumber, String version, int iteration) throws ApiException, IOException {
+                revisions.put(partApi.checkIn(workspaceId, partNumber, version));
+                journal.stepDone(phase, "checkIn " + partNumber);
+            }
+        });
+        if (pending.contains(assemblyNumber)) {
+            revisions.put(partApi.checkIn(workspaceId, assemblyNumber, "A"));
+            journal.stepDone(phase, "checkIn " + assemblyNumber);
+        }
 
         LOGGER.info("Creating product...");
 
@@ -1141,112 +1702,162 @@ public class SampleLoader {
         configurationItemDTO.setDesignItemNumber("CAR-001");
         configurationItemDTO.setId("CAR-001");
 
-        productsApi.createConfigurationItem(workspaceId, configurationItemDTO);
+        try {
+            productsApi.createConfigurationItem(workspaceId, configurationItemDTO);
+        } catch (ApiException e) {
+            alreadyCreated(e, "Product CAR-001");
+        }
     }
 
-    private void createNewVersionsAndReleasedParts() throws ApiException {
+    /**
+     * Creates a sample part, or reads it back when the interrupted run of a resumed load created it
+     */
+    private PartRevisionDTO createPart(PartsApi partsApi, PartCreationDTO part) throws ApiException {
+        try {
+            return revisions.put(partsApi.createNewPart(workspaceId, part));
+        } catch (ApiException e) {
+            alreadyCreated(e, "Part " + part.getNumber());
+            return revisions.getPartRevision(client(), part.getNumber(), "A");
+        }
+    }
+
+    private void createNewVersionsAndReleasedParts() throws ApiException, IOException {
         LOGGER.info("Checking in parts...");
 
-        PartCreationDTO part = new PartCreationDTO();
-        part.setWorkspaceId(workspaceId);
-        part.setDescription("Sample part create with sample loader");
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessGroup1And2());
-        WorkflowModelDTO workflowModelDTO = new WorkspacesApi(client)
-                .getWorkflowModelInWorkspace(workspaceId, "My first workflow");
-        List<RoleMappingDTO> roleMappingDTOs = resolveDefaultRoles(workflowModelDTO);
-        part.setWorkflowModelId(workflowModelDTO.getId());
-        part.setRoleMapping(roleMappingDTOs);
-        part.setAcl(aclDto);
-
-        PartApi partApi = new PartApi(client);
-        PartsApi partsApi = new PartsApi(client);
-
-        part.setTemplateId("SEATS");
-        part.setNumber("SEAT-010");
-        part.setName("Front seat");
-        partsApi.createNewPartVersion(workspaceId, "SEAT-010", "A", part);
-        part.setNumber("SEAT-020");
-        part.setName("Back seat");
-        partsApi.createNewPartVersion(workspaceId, "SEAT-020", "A", part);
-        part.setTemplateId("ENGINES");
-        part.setNumber("ENGINE-050");
-        part.setName("50cc engine");
-        partsApi.createNewPartVersion(workspaceId, "ENGINE-050", "A", part);
-        part.setNumber("ENGINE-100");
-        part.setName("100cc engine");
-        partsApi.createNewPartVersion(workspaceId, "ENGINE-100", "A", part);
-        part.setNumber("CAR-001");
-        part.setName("Car assembly");
-        part.setTemplateId(null);
-        partsApi.createNewPartVersion(workspaceId, "CAR-001", "A", part);
-
-        partApi.releasePartRevision(workspaceId, "SEAT-010", "A");
-        partApi.releasePartRevision(workspaceId, "SEAT-020", "A");
-        partApi.releasePartRevision(workspaceId, "ENGINE-050", "A");
-        partApi.releasePartRevision(workspaceId, "ENGINE-100", "A");
-        partApi.releasePartRevision(workspaceId, "CAR-001", "A");
-
-        partApi.checkIn(workspaceId, "SEAT-010", "B");
-        partApi.checkIn(workspaceId, "SEAT-020", "B");
-        partApi.checkIn(workspaceId, "ENGINE-050", "B");
-        partApi.checkIn(workspaceId, "ENGINE-100", "B");
-        partApi.checkIn(workspaceId, "CAR-001", "B");
-
-        partApi.releasePartRevision(workspaceId, "SEAT-010", "B");
-        partApi.releasePartRevision(workspaceId, "SEAT-020", "B");
-        partApi.releasePartRevision(workspaceId, "ENGINE-050", "B");
-        partApi.releasePartRevision(workspaceId, "ENGINE-100", "B");
-        partApi.releasePartRevision(workspaceId, "CAR-001", "B");
-
-        partsApi.createNewPartVersion(workspaceId, "CAR-001", "B", part);
-        partsApi.createNewPartVersion(workspaceId, "ENGINE-100", "B", part);
-        partsApi.createNewPartVersion(workspaceId, "ENGINE-050", "B", part);
-        partsApi.createNewPartVersion(workspaceId, "SEAT-020", "B", part);
-        partsApi.createNewPartVersion(workspaceId, "SEAT-010", "B", part);
-
-        partApi.checkIn(workspaceId, "SEAT-010", "C");
-        partApi.checkIn(workspaceId, "SEAT-020", "C");
-        partApi.checkIn(workspaceId, "ENGINE-050", "C");
-        partApi.checkIn(workspaceId, "ENGINE-100", "C");
-        partApi.checkIn(workspaceId, "CAR-001", "C");
-    }
-
-    private void createEffectivities() throws ApiException {
+        CreationTemplate parts = carPartsTemplate();
+        CreationTemplate seats = parts.withTemplateId("SEATS");
+        CreationTemplate engines = parts.withTemplateId("ENGINES");
+
+        PartApi partApi = new PartApi(client());
+        PartsApi partsApi = new PartsApi(client());
+
+        // None of these steps can be sent twice, the ones done by the interrupted run of a resumed load are
+        // skipped, as are the parts an idempotent load finds in their last version
+        String phase = "createNewVersionsAndReleasedParts";
+        List<PartCreationDTO> pending = new ArrayList<>();
+        for (PartCreationDTO version : new PartCreationDTO[]{
+                seats.part("SEAT-010", "Front seat"),
+                seats.part("SEAT-020", "Back seat"),
+                engines.part("ENGINE-050", "50cc engine"),
+                engines.part("ENGINE-100", "100cc engine"),
+                parts.part("CAR-001", "Car assembly")}) {
+            if (!partExistedBefore(version.getNumber(), "C")) {
+                pending.add(version);
+            }
+        }
+        PartCreationDTO[] versions = pending.toArray(new PartCreationDTO[pending.size()]);
+
+        for (PartCreationDTO version : versions) {
+            String partNumber = version.getNumber();
+            if (isPending(phase, "version B " + partNumber)) {
+                partsApi.createNewPartVersion(workspaceId, partNumber, "A", version);
+                revisions.partVersionCreated(partNumber);
+                journal.stepDone(phase, "version B " + partNumber);
+            }
+        }
+
+        for (PartCreationDTO version : versions) {
+            String partNumber = version.getNumber();
+            if (isPending(phase, "release A " + partNumber)) {
+                partApi.releasePartRevision(workspaceId, partNumber, "A");
+                revisions.invalidatePart(partNumber, "A");
+                journal.stepDone(phase, "release A " + partNumber);
+            }
+        }
+
+        for (PartCreationDTO version : versions) {
+            String partNumber = version.getNumber();
+            if (isPending(phase, "checkIn B " + partNumber)) {
+                revisions.put(partApi.checkIn(workspaceId, partNumber, "B"));
+                journal.stepDone(phase, "checkIn B " + partNumber);
+            }
+        }
+
+        for (PartCreationDTO version : versions) {
+            String partNumber = version.getNumber();
+            if (isPending(phase, "release B " + partNumber)) {
+                partApi.releasePartRevision(workspaceId, partNumber, "B");
+                revisions.invalidatePart(partNumber, "B");
+                journal.stepDone(phase, "release B " + partNumber);
+            }
+        }
+
+        // Assembly first
+        for (int i = versions.length - 1; i >= 0; i--) {
+            String partNumber = versions[i].getNumber();
+            if (isPending(phase, "version C " + partNumber)) {
+                partsApi.createNewPartVersion(workspaceId, partNumber, "B", versions[i]);
+                revisions.partVersionCreated(partNumber);
+                journal.stepDone(phase, "version C " + partNumber);
+            }
+        }
+
+        for (PartCreationDTO version : versions) {
+            String partNumber = version.getNumber();
+            if (isPending(phase, "checkIn C " + partNumber)) {
+                revisions.put(partApi.checkIn(workspaceId, partNumber, "C"));
+                journal.stepDone(phase, "checkIn C " + partNumber);
+            }
+        }
+    }
+
+    /**
+     * Parts of the car product, for their first and next versions
+     */
+    private CreationTemplate carPartsTemplate() throws ApiException {
+        return new CreationTemplate(workspaceId)
+                .withDescription("Sample part create with sample loader")
+                .withAcl(FULL_ACCESS_GROUP_1_AND_2)
+                .withWorkflow(metadata.getWorkflowModel(client(), "My first workflow"),
+                        metadata.getRoleMapping(client(), "My first workflow"));
+    }
+
+    private void createEffectivities() throws ApiException, IOException {
         LOGGER.info("Creating effectivities...");
 
-        PartsApi partsApi = new PartsApi(client);
+        PartsApi partsApi = new PartsApi(client());
         ConfigurationItemKey configurationItemKey = new ConfigurationItemKey();
         configurationItemKey.setId("CAR-001");
         configurationItemKey.setWorkspace(workspaceId);
 
-        EffectivityDTO effectivityDTO;
-        effectivityDTO = new EffectivityDTO();
-        effectivityDTO.setConfigurationItemKey(configurationItemKey);
-        effectivityDTO.setDescription("Generated effectivity by tests");
-        effectivityDTO.setTypeEffectivity(EffectivityDTO.TypeEffectivityEnum.DATEBASEDEFFECTIVITY);
-
-        effectivityDTO.setName("Effect date 1");
         Calendar c = Calendar.getInstance();
         c.add(Calendar.YEAR, -2);
-        effectivityDTO.setStartDate(c.getTime());
+        Date firstStart = c.getTime();
         c.add(Calendar.YEAR, 1);
-        effectivityDTO.setEndDate(c.getTime());
+        Date secondStart = c.getTime();
+        c.add(Calendar.YEAR, 4);
 
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "SEAT-010", "A");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "SEAT-020", "A");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "ENGINE-050", "A");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "ENGINE-100", "A");
+        EffectivityDTO firstEffectivity = dateEffectivity(configurationItemKey, "Effect date 1", firstStart, secondStart);
+        EffectivityDTO secondEffectivity = dateEffectivity(configurationItemKey, "Effect date 2", secondStart, c.getTime());
 
-        effectivityDTO.setName("Effect date 2");
-        effectivityDTO.setStartDate(c.getTime());
-        c.add(Calendar.YEAR, 4);
-        effectivityDTO.setEndDate(c.getTime());
+        // Effectivities are not unique, the ones created by the interrupted run of a resumed load are skipped.
+        // They cannot be listed: an idempotent load skips the parts whose versions were created by an earlier load.
+        for (String partNumber : new String[]{"SEAT-010", "SEAT-020", "ENGINE-050", "ENGINE-100"}) {
+            createEffectivity(partsApi, firstEffectivity, partNumber, "A");
+        }
+        for (String partNumber : new String[]{"SEAT-010", "SEAT-020", "ENGINE-050", "ENGINE-100"}) {
+            createEffectivity(partsApi, secondEffectivity, partNumber, "B");
+        }
+    }
 
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "SEAT-010", "B");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "SEAT-020", "B");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "ENGINE-050", "B");
-        partsApi.createEffectivity(effectivityDTO, workspaceId, "ENGINE-100", "B");
+    private void createEffectivity(PartsApi partsApi, EffectivityDTO effectivity, String partNumber, String version)
+            throws ApiException, IOException {
+        String step = effectivity.getName() + " " + partNumber + "-" + version;
+        if (isPending("createEffectivities", step) && !partExistedBefore(partNumber, "B")) {
+            partsApi.createEffectivity(effectivity, workspaceId, partNumber, version);
+            journal.stepDone("createEffectivities", step);
+        }
+    }
+
+    private static EffectivityDTO dateEffectivity(ConfigurationItemKey configurationItemKey, String name, Date start, Date end) {
+        EffectivityDTO effectivityDTO = new EffectivityDTO();
+        effectivityDTO.setConfigurationItemKey(configurationItemKey);
+        effectivityDTO.setDescription("Generated effectivity by tests");
+        effectivityDTO.setTypeEffectivity(EffectivityDTO.TypeEffectivityEnum.DATEBASEDEFFECTIVITY);
+        effectivityDTO.setName(name);
+        effectivityDTO.setStartDate(start);
+        effectivityDTO.setEndDate(end);
+        return effectivityDTO;
     }
 
     private void addAttributes(PartsApi partsApi, PartRevisionDTO partRevision) throws ApiException {
@@ -1256,41 +1867,47 @@ public class SampleLoader {
         List<InstanceAttributeDTO> attributes = lastIteration.getInstanceAttributes();
 
         if (attributes.size() == 2) {
-            attributes.get(0).setValue(String.valueOf(Math.random() * 20));
-            attributes.get(1).setValue(String.valueOf(Math.random() * 20));
+            Random partRandom = random.forEntity(partRevision.getNumber());
+            for (InstanceAttributeDTO attribute : attributes) {
+                attribute.setValue(random.attributeValue(attribute.getName(), partRandom));
+            }
         } else {
             LOGGER.warning("Attributes have not been found");
         }
 
-        partsApi.updatePartIteration(workspaceId, partRevision.getNumber(), "A", 1, lastIteration);
+        revisions.put(partsApi.updatePartIteration(workspaceId, partRevision.getNumber(), "A", 1, lastIteration));
 
     }
 
-    private void uploadAttachedFile(PartIterationDTO partIterationDTO, ApiClient client, File file) throws ApiException {
-        new PartBinaryApi(client).uploadAttachedFiles(partIterationDTO.getWorkspaceId(),
-                partIterationDTO.getNumber(), partIterationDTO.getVersion(), 1, file);
-    }
-
-    private void uploadNativeCADFile(PartIterationDTO partIterationDTO, ApiClient client, File file) throws ApiException {
-        new PartBinaryApi(client).uploadNativeCADFile(partIterationDTO.getWorkspaceId(),
-                partIterationDTO.getNumber(), partIterationDTO.getVersion(), 1, file);
-    }
-
-    private void createBaseline() throws ApiException {
-        ProductBaselineApi productBaselineApi = new ProductBaselineApi(client);
+    private void createBaseline() throws ApiException, IOException {
+        ProductBaselineApi productBaselineApi = new ProductBaselineApi(client());
         ProductBaselineCreationDTO baseline = new ProductBaselineCreationDTO();
         baseline.setConfigurationItemId("CAR-001");
 
+        // Baseline names are not unique, the ones created by the interrupted run of a resumed load are skipped,
+        // as are the ones an idempotent load finds
+        Set<String> names = new HashSet<>();
+        if (partExistedBefore("CAR-001", "A")) {
+            for (ProductBaselineDTO existingBaseline : productBaselineApi.getProductBaselinesForProduct(workspaceId, "CAR-001")) {
+                names.add(existingBaseline.getName());
+            }
+        }
+
         baseline.setName("Basic");
         baseline.setType(ProductBaselineCreationDTO.TypeEnum.RELEASED);
-        productBaselineApi.createProductBaseline(workspaceId, baseline, false);
+        if (isPending("createBaseline", "Basic") && !names.contains("Basic")) {
+            productBaselineApi.createProductBaseline(workspaceId, baseline, false);
+            journal.stepDone("createBaseline", "Basic");
+        }
+        if (!isPending("createBaseline", "Medium") || names.contains("Medium")) {
+            return;
+        }
         baseline.setName("Medium");
         baseline.setType(ProductBaselineCreationDTO.TypeEnum.RELEASED);
 
         List<String> links = new ArrayList<>();
 
-        PartApi partApi = new PartApi(client);
-        PartRevisionDTO partRevisionDTO = partApi.getPartRevision(workspaceId, "CAR-001", "B");
+        PartRevisionDTO partRevisionDTO = revisions.getPartRevision(client(), "CAR-001", "B");
         PartIterationDTO lastIteration = LastIterationHelper.getLastIteration(partRevisionDTO);
 
         for (PartUsageLinkDTO puldto : lastIteration.getComponents()) {
@@ -1302,12 +1919,13 @@ public class SampleLoader {
         baseline.setOptionalUsageLinks(links);
 
         productBaselineApi.createProductBaseline(workspaceId, baseline, false);
+        journal.stepDone("createBaseline", "Medium");
     }
 
     private void createProductInstance() throws ApiException {
-        ProductInstancesApi productInstancesApi = new ProductInstancesApi(client);
+        ProductInstancesApi productInstancesApi = new ProductInstancesApi(client());
 
-        List<ProductBaselineDTO> baselines = new ProductBaselineApi(client).getProductBaselinesForProduct(workspaceId, "CAR-001");
+        List<ProductBaselineDTO> baselines = new ProductBaselineApi(client()).getProductBaselinesForProduct(workspaceId, "CAR-001");
         ProductBaselineDTO firstBaselineFound = baselines.get(0);
         ProductBaselineDTO secondBaselineFound = baselines.get(1);
 
@@ -1317,25 +1935,39 @@ public class SampleLoader {
             productInstance.setConfigurationItemId("CAR-001");
             productInstance.setSerialNumber(String.format("CB9025-%08d", i + 1));
             productInstance.setBaselineId(firstBaselineFound.getId());
-            productInstancesApi.createProductInstanceMaster(workspaceId, productInstance);
+            createProductInstance(productInstancesApi, productInstance);
 
             productInstance.setConfigurationItemId("CAR-001");
             productInstance.setSerialNumber(String.format("CM9095-%08d", i + 1));
             productInstance.setBaselineId(secondBaselineFound.getId());
+            createProductInstance(productInstancesApi, productInstance);
+        }
+    }
+
+    private void createProductInstance(ProductInstancesApi productInstancesApi, ProductInstanceCreationDTO productInstance)
+            throws ApiException {
+        try {
             productInstancesApi.createProductInstanceMaster(workspaceId, productInstance);
+        } catch (ApiException e) {
+            alreadyCreated(e, "Product instance " + productInstance.getSerialNumber());
         }
     }
 
-    private void createConfiguration() throws ApiException {
+    private void createConfiguration() throws ApiException, IOException {
+        // Configuration names are not unique, and configurations cannot be listed: an idempotent load
+        // skips the configuration of a door product created by an earlier load
+        if (!isPending("createConfiguration", "cfg-001") || partExistedBefore("DOOR-001", "A")) {
+            return;
+        }
         LOGGER.info("Creating configuration...");
 
-        ProductConfigurationsApi productConfigurationsApi = new ProductConfigurationsApi(client);
+        ProductConfigurationsApi productConfigurationsApi = new ProductConfigurationsApi(client());
 
         List<String> useOptionalLinks = new ArrayList<>();
         ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessForGroupContainingAdmin());
+        aclDto.setGroupEntries(FULL_ACCESS_FOR_GROUP_CONTAINING_ADMIN);
 
-        PartRevisionDTO doorRevisionDto = new PartApi(client).getPartRevision(workspaceId, "DOOR-001", "A");
+        PartRevisionDTO doorRevisionDto = revisions.getPartRevision(client(), "DOOR-001", "A");
         PartIterationDTO doorIterationDto = LastIterationHelper.getLastIteration(doorRevisionDto);
 
         for (PartUsageLinkDTO puldto : doorIterationDto.getComponents()) {
@@ -1350,64 +1982,56 @@ public class SampleLoader {
         productConfigurationDTO.setOptionalUsageLinks(useOptionalLinks);
         productConfigurationDTO.setAcl(aclDto);
         productConfigurationsApi.createConfiguration(workspaceId, productConfigurationDTO);
+        journal.stepDone("createConfiguration", "cfg-001");
     }
 
 
     private void createDoorProduct() throws ApiException, IOException, InterruptedException {
+        if (partExistedBefore("DOOR-001", "A")) {
+            LOGGER.info("Door product already exists");
+            return;
+        }
+
         LOGGER.info("Creating the door product...");
 
-        PartsApi partsApi = new PartsApi(client);
-        PartApi partApi = new PartApi(client);
+        PartsApi partsApi = new PartsApi(client());
+        final PartApi partApi = new PartApi(client());
         String[] partsNumber = {"DOOR-001", "WHEEL-001", "AMORTIZER-001"};
 
-        //ACLS set up
-        ACLDTO aclDto = new ACLDTO();
-        aclDto.setGroupEntries(generateACLEntriesFullAccessGroup1And2());
-
         //Workflow model creation
-        WorkflowModelDTO workflowModelDTO = new WorkspacesApi(client)
-                .getWorkflowModelInWorkspace(workspaceId, "Workflow-door-creation");
-        List<RoleMappingDTO> roleMappingDTOs = resolveDefaultRoles(workflowModelDTO);
+        WorkflowModelDTO workflowModelDTO = metadata.getWorkflowModel(client(), "Workflow-door-creation");
+        List<RoleMappingDTO> roleMappingDTOs = metadata.getRoleMapping(client(), "Workflow-door-creation");
 
         //Create Parts for door structure
-        PartCreationDTO partCreationDTO = new PartCreationDTO();
+        CreationTemplate parts = new CreationTemplate(workspaceId)
+                .withVersion("A")
+                .withAcl(FULL_ACCESS_GROUP_1_AND_2)
+                .withWorkflow(workflowModelDTO, roleMappingDTOs);
         List<String> useOptionalLinks = new ArrayList<>();
 
-        partCreationDTO.setTemplateId("DOOR");
-        partCreationDTO.setNumber(partsNumber[0]);
-        partCreationDTO.setName("Door part");
-        partCreationDTO.setVersion("A");
-        partCreationDTO.setWorkflowModelId(workflowModelDTO.getId());
-        partCreationDTO.setRoleMapping(roleMappingDTOs);
-        partCreationDTO.setAcl(aclDto);
-
-        PartRevisionDTO leftDoor = partsApi.createNewPart(workspaceId, partCreationDTO);
-        addAttributes(partsApi, leftDoor);
-
-        partCreationDTO.setTemplateId("WHEEL");
-        partCreationDTO.setName("Wheel part");
-        partCreationDTO.setNumber(partsNumber[1]);
-        partCreationDTO.setDescription("Left front wheel");
-
-        PartRevisionDTO leftWindow = partsApi.createNewPart(workspaceId, partCreationDTO);
-        addAttributes(partsApi, leftWindow);
-
-        partCreationDTO.setTemplateId("AMORTIZER");
-        partCreationDTO.setName("Amortizer part");
-        partCreationDTO.setNumber(partsNumber[2]);
-        partCreationDTO.setDescription("Left front amortizer");
+        // Parts checked in by the interrupted run of a resumed load are done
+        final String phase = "createDoorProduct";
+        List<String> pending = new ArrayList<>();
+        for (String partNumber : partsNumber) {
+            if (isPending(phase, "checkIn " + partNumber)) {
+                pending.add(partNumber);
+            }
+        }
 
-        PartRevisionDTO leftLock = partsApi.createNewPart(workspaceId, partCreationDTO);
-        addAttributes(partsApi, leftLock);
+        for (PartCreationDTO part : new PartCreationDTO[]{
+                parts.withTemplateId("DOOR").part(partsNumber[0], "Door part"),
+                parts.withTemplateId("WHEEL").withDescription("Left front wheel").part(partsNumber[1], "Wheel part"),
+                parts.withTemplateId("AMORTIZER").withDescription("Left front amortizer").part(partsNumber[2], "Amortizer part")}) {
+            if (pending.contains(part.getNumber())) {
+                addAttributes(partsApi, createPart(partsApi, part));
+            }
+        }
 
         //Create structure product
         // 1 - DOOR
         //     1.1 - LOCK
         //     1.2 - WINDOW
 
-        PartRevisionDTO doorRevisionDto = partApi.getPartRevision(workspaceId, partsNumber[0], "A");
-        PartIterationDTO doorIterationDto = LastIterationHelper.getLastIteration(doorRevisionDto);
-
         List<PartUsageLinkDTO> components = new ArrayList<>();
         PartUsageLinkDTO windowLeftLink = new PartUsageLinkDTO();
 
@@ -1490,24 +2114,45 @@ public class SampleLoader {
         components.add(lockLeftLink);
         components.add(lockRightLink);
 
-        doorIterationDto.setComponents(components);
-        partApi.updatePartIteration(workspaceId, partsNumber[0], "A", 1, doorIterationDto);
+        if (pending.contains(partsNumber[0])) {
+            PartRevisionDTO doorRevisionDto = revisions.getPartRevision(client(), partsNumber[0], "A");
+            PartIterationDTO doorIterationDto = LastIterationHelper.getLastIteration(doorRevisionDto);
+            doorIterationDto.setComponents(components);
+            revisions.put(partApi.updatePartIteration(workspaceId, partsNumber[0], "A", 1, doorIterationDto));
+        }
 
         LOGGER.info("Uploading 3D files...");
 
-        doorIterationDto.setNumber(partsNumber[1]);
-        uploadNativeCADFile(doorIterationDto, client, SampleLoaderUtils.getFile("BassBoat-TrollingMotor.obj"));
-        uploadAttachedFile(doorIterationDto, client, SampleLoaderUtils.getFile("BassBoat-FrontSeat.mtl"));
-
-        doorIterationDto.setNumber(partsNumber[2]);
-        uploadNativeCADFile(doorIterationDto, client, SampleLoaderUtils.getFile("BassBoat-OutboardMotor.obj"));
-        uploadAttachedFile(doorIterationDto, client, SampleLoaderUtils.getFile("BassBoat-BackSeat.mtl"));
+        String[][] files = {
+                {partsNumber[1], "BassBoat-TrollingMotor.obj", "BassBoat-FrontSeat.mtl"},
+                {partsNumber[2], "BassBoat-OutboardMotor.obj", "BassBoat-BackSeat.mtl"}
+        };
+
+        ConversionAwaiter conversions = new ConversionAwaiter(client(), workspaceId, conversionTimeout);
+        try (UploadPipeline uploads = new UploadPipeline(client(), workspaceId, uploadConcurrency, uploadAccounting)) {
+            uploads.setConversions(conversions);
+            for (String[] file : files) {
+                if (pending.contains(file[0])) {
+                    uploads.nativeCADFile(file[0], "A", 1, file[1]);
+                    uploads.attachedFile(file[0], "A", 1, file[2]);
+                }
+            }
+            uploads.join();
+        }
 
-        for (String s : partsNumber) {
-            partApi.checkIn(workspaceId, s, "A");
+        conversions.await(new ConversionAwaiter.Listener() {
+            @Override
+            public void converted(String partNumber, String version, int iteration) throws ApiException, IOException {
+                revisions.put(partApi.checkIn(workspaceId, partNumber, version));
+                journal.stepDone(phase, "checkIn " + partNumber);
+            }
+        });
+        if (pending.contains(partsNumber[0])) {
+            revisions.put(partApi.checkIn(workspaceId, partsNumber[0], "A"));
+            journal.stepDone(phase, "checkIn " + partsNumber[0]);
         }
 
-        ProductsApi productsApi = new ProductsApi(client);
+        ProductsApi productsApi = new ProductsApi(client());
 
         //Create the product
         ConfigurationItemDTO product = new ConfigurationItemDTO();
@@ -1516,10 +2161,14 @@ public class SampleLoader {
         product.setDescription("Generated from sample data for test");
         product.setWorkspaceId(workspaceId);
 
-        productsApi.createConfigurationItem(workspaceId, product);
+        try {
+            productsApi.createConfigurationItem(workspaceId, product);
+        } catch (ApiException e) {
+            alreadyCreated(e, "Product " + product.getId());
+        }
 
-        doorRevisionDto = partApi.getPartRevision(workspaceId, partsNumber[0], "A");
-        doorIterationDto = LastIterationHelper.getLastIteration(doorRevisionDto);
+        PartRevisionDTO doorRevisionDto = revisions.getPartRevision(client(), partsNumber[0], "A");
+        PartIterationDTO doorIterationDto = LastIterationHelper.getLastIteration(doorRevisionDto);
 
         //Create the baseline
         ProductBaselineCreationDTO baseline = new ProductBaselineCreationDTO();
@@ -1540,31 +2189,53 @@ public class SampleLoader {
         List<ComponentDTO> structureComponents = structure.getComponents();
 
         //Create a typed links
-        LightPathToPathLinkDTO link = new LightPathToPathLinkDTO();
-        link.setType("Mechanical");
-        link.setDescription("a typed link created from sample data");
-        link.setSourcePath(structureComponents.get(0).getPath());
-        link.setTargetPath(structureComponents.get(1).getPath());
-        productsApi.createPathToPathLink(workspaceId, product.getId(), link);
+        if (isPending(phase, "link")) {
+            LightPathToPathLinkDTO link = new LightPathToPathLinkDTO();
+            link.setType("Mechanical");
+            link.setDescription("a typed link created from sample data");
+            link.setSourcePath(structureComponents.get(0).getPath());
+            link.setTargetPath(structureComponents.get(1).getPath());
+            productsApi.createPathToPathLink(workspaceId, product.getId(), link);
+            journal.stepDone(phase, "link");
+        }
 
-        new ProductBaselineApi(client).createProductBaseline(workspaceId, baseline, false);
+        if (isPending(phase, "baseline")) {
+            new ProductBaselineApi(client()).createProductBaseline(workspaceId, baseline, false);
+            journal.stepDone(phase, "baseline");
+        }
+    }
+
+    private void createGeneratedProduct() throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Creating generated product...");
+        bomGenerator.generate(client(), workspaceId, uploadAccounting, journal);
+    }
+
+    private void createGeneratedDocuments() throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Creating generated documents...");
+        documentGenerator.generate(client(), workspaceId, uploadAccounting, journal);
+    }
+
+    private void createGeneratedProductInstances() throws ApiException, IOException, InterruptedException {
+        LOGGER.info("Creating generated product instances...");
+        productInstanceGenerator.generate(client(), workspaceId);
     }
 
     private void createRolesAndWorkflowForDoorProduct() throws ApiException {
+        if (existedBefore(ExistingEntities.Kind.WORKFLOW_MODEL, "Workflow-door-creation")) {
+            LOGGER.info("Roles and workflow of the door product already exist");
+            return;
+        }
         LOGGER.info("Creating roles for door product...");
 
-        RolesApi rolesApi = new RolesApi(client);
-        List<UserGroupDTO> groupsAvailable = new WorkspacesApi(client).getGroups(workspaceId);
+        RolesApi rolesApi = new RolesApi(client());
+        List<UserGroupDTO> groupsAvailable = metadata.getGroups(client());
 
         List<UserGroupDTO> tmpArrays = new ArrayList<>();
         tmpArrays.add(groupsAvailable.get(1));
         tmpArrays.add(groupsAvailable.get(2));
 
-        RoleDTO roleGroupDTO = new RoleDTO();
-        roleGroupDTO.setWorkspaceId(workspaceId);
-        roleGroupDTO.setName("Assembly engineers");
-        roleGroupDTO.setDefaultAssignedGroups(tmpArrays);
-        RoleDTO engineers = rolesApi.createRole(workspaceId, roleGroupDTO);
+        RoleDTO engineers = createRole(rolesApi, "Assembly engineers", null, tmpArrays);
+        metadata.rolesChanged();
 
         // Workflow
         LOGGER.info("Setting workflow...");
@@ -1627,73 +2298,71 @@ public class SampleLoader {
         workflowModelDTO.setFinalLifeCycleState("Terminated");
         workflowModelDTO.setId("Workflow-door-creation");
 
-        new WorkflowModelsApi(client).createWorkflowModel(workspaceId, workflowModelDTO);
-    }
-
-    private List<RoleMappingDTO> resolveDefaultRoles(WorkflowModelDTO workflowModel) {
-        Set<RoleDTO> rolesInvolved = WorkflowHelper.getRolesInvolved(workflowModel);
-        List<RoleMappingDTO> roleMapping = new ArrayList<>();
-
-        // we need to resolve the roles (use defaults assignments)
-        for (RoleDTO role : rolesInvolved) {
-
-            RoleMappingDTO roleMappingDTO = new RoleMappingDTO();
-            roleMappingDTO.setRoleName(role.getName());
-
-            for (UserGroupDTO group : role.getDefaultAssignedGroups()) {
-
-                roleMappingDTO.getGroupIds().add(group.getId());
-            }
-            for (UserDTO user : role.getDefaultAssignedUsers()) {
-                roleMappingDTO.getUserLogins().add(user.getLogin());
-            }
-            roleMapping.add(roleMappingDTO);
-        }
-
-        return roleMapping;
+        createWorkflowModel(workflowModelDTO);
     }
 
-    private void checkoutParts() throws ApiException {
+    private void checkoutParts() throws ApiException, IOException {
         LOGGER.info("Checking out some parts and documents...");
 
-        PartApi partApi = new PartApi(client);
-        partApi.checkOut(workspaceId, "DOOR-001", "A");
-        partApi.checkOut(workspaceId, "WHEEL-001", "A");
-        partApi.checkOut(workspaceId, "AMORTIZER-001", "A");
+        PartApi partApi = new PartApi(client());
+        checkOutPart(partApi, "DOOR-001", "A");
+        checkOutPart(partApi, "WHEEL-001", "A");
+        checkOutPart(partApi, "AMORTIZER-001", "A");
 
-        ApiClient joe = DocDokuPLMClientFactory.createJWTClient(url, "joe", password);
+        ApiClient joe = sessions.get("joe", password);
         partApi.setApiClient(joe);
 
-        partApi.checkOut(workspaceId, "CAR-001", "C");
-        partApi.checkOut(workspaceId, "ENGINE-100", "C");
+        checkOutPart(partApi, "CAR-001", "C");
+        checkOutPart(partApi, "ENGINE-100", "C");
 
-        ApiClient rob = DocDokuPLMClientFactory.createJWTClient(url, "rob", password);
+        ApiClient rob = sessions.get("rob", password);
         partApi.setApiClient(rob);
-        partApi.checkOut(workspaceId, "ENGINE-050", "C");
-        partApi.checkOut(workspaceId, "SEAT-010", "C");
+        checkOutPart(partApi, "ENGINE-050", "C");
+        checkOutPart(partApi, "SEAT-010", "C");
 
-        ApiClient steve = DocDokuPLMClientFactory.createJWTClient(url, "steve", password);
+        ApiClient steve = sessions.get("steve", password);
         partApi.setApiClient(steve);
-        partApi.checkOut(workspaceId, "SEAT-020", "C");
+        checkOutPart(partApi, "SEAT-020", "C");
 
-        DocumentApi documentApi = new DocumentApi(client);
-        documentApi.checkOutDocument(workspaceId, "USER-MAN-001", "A");
-        documentApi.checkOutDocument(workspaceId, "INVOICE-002", "A");
-        documentApi.checkOutDocument(workspaceId, "INVOICE-001", "A");
+        DocumentApi documentApi = new DocumentApi(client());
+        checkOutDocument(documentApi, "USER-MAN-001");
+        checkOutDocument(documentApi, "INVOICE-002");
+        checkOutDocument(documentApi, "INVOICE-001");
 
         documentApi.setApiClient(joe);
-        documentApi.checkOutDocument(workspaceId, "API-001", "A");
+        checkOutDocument(documentApi, "API-001");
 
-        ApiClient bill = DocDokuPLMClientFactory.createJWTClient(url, "bill", password);
+        ApiClient bill = sessions.get("bill", password);
         documentApi.setApiClient(bill);
-        documentApi.checkOutDocument(workspaceId, "LETTER-001", "A");
-        documentApi.checkOutDocument(workspaceId, "LETTER-002", "A");
+        checkOutDocument(documentApi, "LETTER-001");
+        checkOutDocument(documentApi, "LETTER-002");
+    }
+
+    /**
+     * Checks out a part, unless the interrupted run of a resumed load did, or an earlier load created it
+     */
+    private void checkOutPart(PartApi partApi, String partNumber, String version) throws ApiException, IOException {
+        if (isPending("checkoutParts", "part " + partNumber) && !partExistedBefore(partNumber, version)) {
+            revisions.put(partApi.checkOut(workspaceId, partNumber, version));
+            journal.stepDone("checkoutParts", "part " + partNumber);
+        }
+    }
+
+    /**
+     * Checks out the first version of a document, unless the interrupted run of a resumed load did, or an
+     * earlier load created it
+     */
+    private void checkOutDocument(DocumentApi documentApi, String reference) throws ApiException, IOException {
+        if (isPending("checkoutParts", "document " + reference) && !existingDocuments.contains(reference)) {
+            documentApi.checkOutDocument(workspaceId, reference, "A");
+            journal.stepDone("checkoutParts", "document " + reference);
+        }
     }
 
     private void createOrganization() throws ApiException {
         LOGGER.info("Creating organization for " + login + "...");
 
-        OrganizationsApi organizationsApi = new OrganizationsApi(client);
+        OrganizationsApi organizationsApi = new OrganizationsApi(client());
         OrganizationDTO organizationDTO = organizationsApi.getOrganization();
         if (organizationDTO != null) {
             if (!login.equals(organizationDTO.getOwner())) {
@@ -1722,4 +2391,11 @@ public class SampleLoader {
         }
     }
 
+    /**
+     * ACL update of one entity
+     */
+    private interface AclUpdate<T> {
+        void update(T id) throws ApiException;
+    }
+
 }
@@ -22,6 +22,8 @@ package com.docdoku.loaders;
 
 import org.kohsuke.args4j.Option;
 
+import java.io.File;
+
 
 /**
  * Available options for sample loader
@@ -37,12 +39,132 @@ public class SampleLoaderCommandLine {
     @Option(required = true, name = "-p", aliases = "--password", metaVar = "<password>", usage = "password for login")
     protected String password;
 
-    @Option(required = true, name = "-h", aliases = "--host", metaVar = "<host>", usage = "host for server")
+    @Option(required = true, name = "-h", aliases = "--host", metaVar = "<host>", usage = "host for server, or embedded to load into an in-process stand-in")
     protected String url;
 
+    @Option(name = "--embedded-latency", metaVar = "<ms>", usage = "mean time each call to the embedded server takes")
+    protected long embeddedLatency = 0;
+
+    @Option(name = "--embedded-error-rate", metaVar = "<ratio>", usage = "share of calls to the embedded server failing with a 503")
+    protected double embeddedErrorRate = 0;
+
+    @Option(name = "--log-format", metaVar = "<format>", usage = "TEXT for readable log lines, JSON for one JSON object per line")
+    protected SampleLoaderLogger.Format logFormat = SampleLoaderLogger.Format.TEXT;
+
+    @Option(name = "--log-file", metaVar = "<file>", usage = "file log records are appended to instead of the console")
+    protected File logFile;
+
+    @Option(name = "--log-buffer", metaVar = "<records>", usage = "number of log records buffered for the log writer thread")
+    protected int logBuffer = SampleLoaderLogger.DEFAULT_BUFFER;
+
+    @Option(name = "--log-overflow", metaVar = "<policy>", usage = "BLOCK to wait for room when the log buffer is full, DROP to drop records below warning")
+    protected AsyncLogHandler.Overflow logOverflow = AsyncLogHandler.Overflow.BLOCK;
+
     @Option(name = "-w", aliases = "--workspace", metaVar = "<workspace>", usage = "workspace to use")
     protected String workspaceId;
 
+    @Option(name = "-t", aliases = "--threads", metaVar = "<threads>", usage = "number of load phases run concurrently")
+    protected int threads = 4;
+
+    @Option(name = "--account-threads", metaVar = "<threads>", usage = "number of accounts provisioned concurrently")
+    protected int accountThreads = 8;
+
+    @Option(name = "--upload-threads", metaVar = "<threads>", usage = "number of files uploaded concurrently by a phase")
+    protected int uploadThreads = 4;
+
+    @Option(name = "--acl-threads", metaVar = "<threads>", usage = "number of ACL updates of created entities sent concurrently")
+    protected int aclThreads = 8;
+
+    @Option(name = "--conversion-timeout", metaVar = "<seconds>", usage = "maximum time to wait for CAD files conversion")
+    protected int conversionTimeout = 120;
+
+    @Option(name = "--token-refresh", metaVar = "<seconds>", usage = "time after which users are authenticated again")
+    protected int tokenRefresh = 120;
+
+    @Option(name = "--retries", metaVar = "<attempts>", usage = "how many times an API call is sent at most on overload or connection errors")
+    protected int retries = 5;
+
+    @Option(name = "--retry-budget", metaVar = "<retries>", usage = "how many retries all API calls of a workspace may do together")
+    protected long retryBudget = 1000;
+
+    @Option(name = "--resume", usage = "go on from the journal of an interrupted load of the same workspace")
+    protected boolean resume = false;
+
+    @Option(name = "--idempotent", usage = "list existing entities first and only create the missing ones")
+    protected boolean idempotent = false;
+
+    @Option(name = "--journal-dir", metaVar = "<directory>", usage = "directory of the load journals")
+    protected File journalDirectory = new File(".");
+
+    @Option(name = "--workspaces", metaVar = "<count>", usage = "number of workspaces to seed")
+    protected int workspaces = 1;
+
+    @Option(name = "--workspace-threads", metaVar = "<threads>", usage = "number of workspaces seeded concurrently")
+    protected int workspaceThreads = 4;
+
+    @Option(name = "--bom-parts", metaVar = "<count>", usage = "number of parts of an additional generated product, none if 0")
+    protected int bomParts = 0;
+
+    @Option(name = "--bom-depth", metaVar = "<levels>", usage = "number of levels of the generated product")
+    protected int bomDepth = 4;
+
+    @Option(name = "--bom-fanout", metaVar = "<count>", usage = "maximum number of children of a generated assembly")
+    protected int bomFanOut = 10;
+
+    @Option(name = "--bom-optional-ratio", metaVar = "<ratio>", usage = "share of optional usage links in the generated product")
+    protected double bomOptionalRatio = 0.2;
+
+    @Option(name = "--bom-substitute-ratio", metaVar = "<ratio>", usage = "share of usage links with a substitute in the generated product")
+    protected double bomSubstituteRatio = 0.1;
+
+    @Option(name = "--bom-geometry", metaVar = "<resource>", usage = "sample resource uploaded as CAD file of generated leaves")
+    protected String bomGeometry;
+
+    @Option(name = "--bom-geometry-size", metaVar = "<bytes>", usage = "size of a geometry generated for each leaf instead of a sample resource")
+    protected long bomGeometrySize = 0;
+
+    @Option(name = "--bom-threads", metaVar = "<threads>", usage = "number of generated parts created concurrently")
+    protected int bomThreads = 8;
+
+    @Option(name = "--documents", metaVar = "<count>", usage = "number of additional generated documents, none if 0")
+    protected long documents = 0;
+
+    @Option(name = "--document-threads", metaVar = "<threads>", usage = "number of generated documents created, and uploaded, concurrently")
+    protected int documentThreads = 8;
+
+    @Option(name = "--product-instances", metaVar = "<count>", usage = "number of additional generated product instances, none if 0")
+    protected long productInstances = 0;
+
+    @Option(name = "--product-instance-threads", metaVar = "<threads>", usage = "number of generated product instances created concurrently")
+    protected int productInstanceThreads = 8;
+
+    @Option(name = "--product-instance-checkpoint", metaVar = "<file>", usage = "file product instances generation progress is saved to and resumed from")
+    protected File productInstanceCheckpoint;
+
+    @Option(name = "--seed", metaVar = "<seed>", usage = "seed of the generated data, the same seed generates the same data")
+    protected Long seed;
+
+    @Option(name = "--attribute-values", metaVar = "<distributions>", usage = "distributions of the part attribute values, such as weight=normal:10:2,price=uniform:5:50")
+    protected String attributeValues;
+
+    @Option(name = "--metrics-json", metaVar = "<file>", usage = "file the latencies of the load phases and API calls are exported to as JSON")
+    protected File metricsJson;
+
+    @Option(name = "--metrics-csv", metaVar = "<file>", usage = "file the latencies of the load phases and API calls are exported to as CSV")
+    protected File metricsCsv;
+
+    @Option(name = "--record", metaVar = "<file>", usage = "file every API call of the load is recorded to")
+    protected File record;
+
+    @Option(name = "--replay", metaVar = "<file>", usage = "recorded file whose API calls are sent again instead of loading")
+    protected File replay;
+
+    @Option(name = "--replay-pacing", metaVar = "<pacing>", usage = "ORIGINAL to send replayed calls at their recorded pace, FASTEST to send them as soon as possible")
+    protected TraceReplayer.Pacing replayPacing = TraceReplayer.Pacing.FASTEST;
+
+    @Option(name = "--replay-threads", metaVar = "<threads>", usage = "number of replayed calls sent concurrently")
+    protected int replayThreads = 8;
+
     public String getLogin() {
         return login;
     }
@@ -55,7 +177,174 @@ public class SampleLoaderCommandLine {
         return url;
     }
 
+    /**
+     * Replaces the host, once the embedded server is started
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public long getEmbeddedLatency() {
+        return embeddedLatency;
+    }
+
+    public double getEmbeddedErrorRate() {
+        return embeddedErrorRate;
+    }
+
+    public SampleLoaderLogger.Format getLogFormat() {
+        return logFormat;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    public int getLogBuffer() {
+        return logBuffer;
+    }
+
+    public AsyncLogHandler.Overflow getLogOverflow() {
+        return logOverflow;
+    }
+
     public String getWorkspaceId() {
         return workspaceId;
     }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getAccountThreads() {
+        return accountThreads;
+    }
+
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    public int getAclThreads() {
+        return aclThreads;
+    }
+
+    public int getConversionTimeout() {
+        return conversionTimeout;
+    }
+
+    public int getTokenRefresh() {
+        return tokenRefresh;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public long getRetryBudget() {
+        return retryBudget;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    public File getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public int getWorkspaces() {
+        return workspaces;
+    }
+
+    public int getWorkspaceThreads() {
+        return workspaceThreads;
+    }
+
+    public int getBomParts() {
+        return bomParts;
+    }
+
+    public int getBomDepth() {
+        return bomDepth;
+    }
+
+    public int getBomFanOut() {
+        return bomFanOut;
+    }
+
+    public double getBomOptionalRatio() {
+        return bomOptionalRatio;
+    }
+
+    public double getBomSubstituteRatio() {
+        return bomSubstituteRatio;
+    }
+
+    public String getBomGeometry() {
+        return bomGeometry;
+    }
+
+    public long getBomGeometrySize() {
+        return bomGeometrySize;
+    }
+
+    public int getBomThreads() {
+        return bomThreads;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public int getDocumentThreads() {
+        return documentThreads;
+    }
+
+    public long getProductInstances() {
+        return productInstances;
+    }
+
+    public int getProductInstanceThreads() {
+        return productInstanceThreads;
+    }
+
+    public File getProductInstanceCheckpoint() {
+        return productInstanceCheckpoint;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public String getAttributeValues() {
+        return attributeValues;
+    }
+
+    public File getMetricsJson() {
+        return metricsJson;
+    }
+
+    public File getMetricsCsv() {
+        return metricsCsv;
+    }
+
+    public File getRecord() {
+        return record;
+    }
+
+    public File getReplay() {
+        return replay;
+    }
+
+    public TraceReplayer.Pacing getReplayPacing() {
+        return replayPacing;
+    }
+
+    public int getReplayThreads() {
+        return replayThreads;
+    }
 }
@@ -21,23 +21,49 @@
 package com.docdoku.loaders;
 
 
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.logging.*;
 
 /**
  * Custom logger for the sample loader application
  *
+ * Records are written asynchronously, see AsyncLogHandler, as text to the console unless
+ * configured otherwise.
+ *
  * @author Morgan GUIMARD
  */
 
 public class SampleLoaderLogger {
 
+    /**
+     * Output format of the records
+     */
+    public enum Format {
+        /**
+         * [LEVEL] - message, one line per record
+         */
+        TEXT,
+        /**
+         * One JSON object per line, with time, level, thread id, logger, message and error
+         */
+        JSON
+    }
+
+    public static final int DEFAULT_BUFFER = 8192;
+
     private static Logger LOGGER = Logger.getLogger(SampleLoaderLogger.class.getName());
 
+    private static Handler handler;
+
     static {
         LOGGER.setUseParentHandlers(false);
-        CustomFormatter formatter = new CustomFormatter();
-        ConsoleHandler handler = new ConsoleHandler();
-        handler.setFormatter(formatter);
+        handler = new AsyncLogHandler(System.err, false, DEFAULT_BUFFER, AsyncLogHandler.Overflow.BLOCK);
+        handler.setFormatter(new CustomFormatter());
         LOGGER.addHandler(handler);
     }
 
@@ -45,25 +71,59 @@ public class SampleLoaderLogger {
         return LOGGER;
     }
 
+    /**
+     * Replaces the output of the records, the records logged so far are written to the previous one
+     *
+     * @param file     file records are appended to, the console if null
+     * @param capacity number of records buffered before overflow applies
+     */
+    public static synchronized void configure(File file, Format format, int capacity,
+                                              AsyncLogHandler.Overflow overflow) throws IOException {
+        Handler configured = file != null
+                ? new AsyncLogHandler(new FileOutputStream(file, true), true, capacity, overflow)
+                : new AsyncLogHandler(System.err, false, capacity, overflow);
+        configured.setFormatter(format == Format.JSON ? new JsonLinesFormatter() : new CustomFormatter());
+
+        LOGGER.addHandler(configured);
+        LOGGER.removeHandler(handler);
+        handler.close();
+        handler = configured;
+    }
+
     private static class CustomFormatter extends Formatter {
         public String format(LogRecord record) {
-            StringBuilder builder = new StringBuilder(1000);
+            String message = formatMessage(record);
+            Throwable thrown = record.getThrown();
+            StringBuilder builder = new StringBuilder(message.length() + 16);
             builder.append("[").append(record.getLevel()).append("] - ");
-            builder.append(formatMessage(record));
+            builder.append(message);
             builder.append("\n");
-            Throwable thrown = record.getThrown();
             if (null != thrown) {
-                builder.append(thrown.getMessage());
+                builder.append(thrown.getMessage()).append("\n");
             }
             return builder.toString();
         }
+    }
 
-        public String getHead(Handler h) {
-            return super.getHead(h);
-        }
-
-        public String getTail(Handler h) {
-            return super.getTail(h);
+    private static class JsonLinesFormatter extends Formatter {
+        public String format(LogRecord record) {
+            StringWriter line = new StringWriter(128);
+            try (JsonWriter json = new JsonWriter(line)) {
+                json.beginObject()
+                        .name("time").value(record.getMillis())
+                        .name("level").value(record.getLevel().getName())
+                        .name("thread").value(record.getThreadID())
+                        .name("logger").value(record.getLoggerName())
+                        .name("message").value(formatMessage(record));
+                Throwable thrown = record.getThrown();
+                if (null != thrown) {
+                    json.name("error").value(thrown.toString());
+                }
+                json.endObject();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return line.append('\n').toString();
         }
     }
 }
@@ -20,12 +20,9 @@
 
 package com.docdoku.loaders;
 
-import org.apache.commons.io.IOUtils;
+import com.docdoku.plm.api.client.ApiException;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -44,19 +41,25 @@ public class SampleLoaderUtils {
         return domain.startsWith("www.") ? domain.substring(4) : domain;
     }
 
-    public static File getFile(String fileName) throws IOException {
-        InputStream resourceAsStream = SampleLoaderUtils.class.getClassLoader().getResourceAsStream(RESOURCE_PREFIX + fileName);
-        return stream2file(resourceAsStream, fileName);
-    }
-
-    public static File stream2file(InputStream in, String fileName) throws IOException {
-        String tempDir = System.getProperty("java.io.tmpdir");
-        final File tempFile = new File(tempDir, fileName);
-        tempFile.deleteOnExit();
-        try (FileOutputStream out = new FileOutputStream(tempFile)) {
-            IOUtils.copy(in, out);
+    /**
+     * Rethrows the failure of a task run on a worker thread with its original checked type
+     */
+    public static void rethrow(Throwable failure) throws ApiException, IOException, InterruptedException {
+        if (failure instanceof ApiException) {
+            throw (ApiException) failure;
         }
-
-        return tempFile;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Randomness of the generated data, derived from a single seed.
+ *
+ * Every entity draws from its own generator, derived from the seed and the entity key. Values do
+ * not depend on the thread creating the entity or on the creation order, so the same seed gives the
+ * same data, and generating threads never share a generator.
+ */
+public class SampleRandom {
+
+    /**
+     * Draws the value of an instance attribute
+     */
+    public interface Distribution {
+        String next(Random random);
+    }
+
+    private final long seed;
+    private final Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+    private volatile Distribution defaultDistribution = uniform(0, 20);
+
+    public SampleRandom(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Uses a seed of its own, to be logged if the data has to be generated again
+     */
+    public SampleRandom() {
+        this(new Random().nextLong());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Generator of the entity, the same for the same seed and key. Not thread safe: meant to be
+     * used by the thread creating the entity, and dropped afterwards.
+     */
+    public Random forEntity(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return new Random(mix(seed + mix(hash)));
+    }
+
+    public void setDistribution(String attributeName, Distribution distribution) {
+        distributions.put(attributeName, distribution);
+    }
+
+    /**
+     * Distribution of the attributes without a distribution of their own, uniform between 0 and 20 by default
+     */
+    public void setDefaultDistribution(Distribution defaultDistribution) {
+        this.defaultDistribution = defaultDistribution;
+    }
+
+    /**
+     * Sets the distributions described by name=kind:parameters entries separated by commas, such as
+     * weight=normal:10:2,price=uniform:5:50. Kinds are uniform:min:max, normal:mean:deviation and
+     * constant:value. An entry without name sets the default distribution.
+     */
+    public void setDistributions(String description) {
+        for (String entry : description.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            Distribution distribution = parse(entry.substring(equals + 1));
+            if (equals < 0) {
+                setDefaultDistribution(distribution);
+            } else {
+                setDistribution(entry.substring(0, equals).trim(), distribution);
+            }
+        }
+    }
+
+    public String attributeValue(String attributeName, Random random) {
+        Distribution distribution = attributeName != null ? distributions.get(attributeName) : null;
+        return (distribution != null ? distribution : defaultDistribution).next(random);
+    }
+
+    public static Distribution uniform(final double min, final double max) {
+        return new Distribution() {
+            @Override
+            public String next(Random random) {
+                return String.valueOf(min + random.nextDouble() * (max - min));
+            }
+        };
+    }
+
+    /**
+     * Values are not bounded: a deviation large in front of the mean gives negative values
+     */
+    public static Distribution normal(final double mean, final double deviation) {
+        return new Distribution() {
+            @Override
+            public String next(Random random) {
+                return String.valueOf(mean + random.nextGaussian() * deviation);
+            }
+        };
+    }
+
+    public static Distribution constant(final String value) {
+        return new Distribution() {
+            @Override
+            public String next(Random random) {
+                return value;
+            }
+        };
+    }
+
+    private static Distribution parse(String description) {
+        String[] parts = description.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "uniform":
+                    if (parts.length == 3) {
+                        return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    }
+                    break;
+                case "normal":
+                    if (parts.length == 3) {
+                        return normal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    }
+                    break;
+                case "constant":
+                    if (parts.length == 2) {
+                        return constant(parts[1]);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid distribution " + description, e);
+        }
+        throw new IllegalArgumentException("Invalid distribution " + description);
+    }
+
+    /**
+     * Spreads close inputs over the whole range, so that close seeds and keys give unrelated generators
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.DocDokuPLMClientFactory;
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Authenticated API clients, one per login.
+ *
+ * A login authenticates once and its JWT client is reused until the token gets close to its
+ * expiration, it is then authenticated again. The headers of a client are never changed once it
+ * is shared: an interceptor replaces the first token of a login, which its client keeps sending,
+ * with its latest one, so that API services built before the refresh send it too. Every client,
+ * the guest one included, runs on the same HTTP client so that all the API services share one
+ * connection pool.
+ */
+public class SessionPool {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final long DEFAULT_TOKEN_REFRESH = 120000;
+    private static final String AUTHORIZATION = "Authorization";
+
+    private class Session {
+        private final String login;
+        private final String password;
+        private ApiClient client;
+        private long refreshAt;
+        // Latest authorization header, read by the interceptor on every call
+        private volatile String authorization;
+
+        Session(String login, String password) {
+            this.login = login;
+            this.password = password;
+        }
+
+        synchronized ApiClient client() throws ApiException {
+            if (client == null || System.nanoTime() - refreshAt >= 0) {
+                if (client != null && LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Refreshing token of " + login);
+                }
+                ApiClient authenticated = authenticate(login, password);
+                authorization = authorization(authenticated);
+                if (client == null) {
+                    client = authenticated;
+                    sessionsByFirstAuthorization.put(authorization, this);
+                }
+                refreshAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tokenRefresh);
+            }
+            return client;
+        }
+
+        synchronized void invalidate() {
+            refreshAt = System.nanoTime();
+        }
+    }
+
+    private final String url;
+    private volatile long tokenRefresh = DEFAULT_TOKEN_REFRESH;
+    private final ApiClient guestClient;
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> sessionsByFirstAuthorization = new ConcurrentHashMap<>();
+
+    public SessionPool(String url) {
+        this.url = url;
+        this.guestClient = DocDokuPLMClientFactory.createClient(url);
+        guestClient.getHttpClient().interceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                String sent = request.header(AUTHORIZATION);
+                Session session = sent != null ? sessionsByFirstAuthorization.get(sent) : null;
+                if (session != null) {
+                    String latest = session.authorization;
+                    if (!latest.equals(sent)) {
+                        request = request.newBuilder().header(AUTHORIZATION, latest).build();
+                    }
+                }
+                return chain.proceed(request);
+            }
+        });
+    }
+
+    /**
+     * Sets the time in milliseconds after which a login is authenticated again,
+     * it must be shorter than the token lifetime configured on the server
+     */
+    public void setTokenRefresh(long tokenRefresh) {
+        this.tokenRefresh = tokenRefresh;
+    }
+
+    public ApiClient getGuestClient() {
+        return guestClient;
+    }
+
+    /**
+     * Returns the client authenticated as given login, authenticating if there is no valid token yet
+     */
+    public ApiClient get(String login, String password) throws ApiException {
+        Session session = sessions.get(login);
+        if (session == null) {
+            Session created = new Session(login, password);
+            session = sessions.putIfAbsent(login, created);
+            if (session == null) {
+                session = created;
+            }
+        }
+        return session.client();
+    }
+
+    /**
+     * Expires the token of given login, next call to get authenticates again
+     */
+    public void invalidate(String login) {
+        Session session = sessions.get(login);
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
+    private ApiClient authenticate(String login, String password) throws ApiException {
+        ApiClient client = DocDokuPLMClientFactory.createJWTClient(url, login, password);
+        client.setHttpClient(guestClient.getHttpClient());
+        return client;
+    }
+
+    /**
+     * Authorization header the client adds to its requests, read before the client is shared
+     */
+    private String authorization(ApiClient client) {
+        Request.Builder request = new Request.Builder().url(url);
+        client.processHeaderParams(new HashMap<String, String>(), request);
+        return request.build().header(AUTHORIZATION);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.client.Pair;
+import com.squareup.okhttp.*;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Uploads files to the binary resources straight from a BinarySource.
+ *
+ * The generated binary services need a java.io.File; here the multipart body is written from
+ * the source stream while the request is sent, so nothing is written to disk. Requests go
+ * through the api client, with its base path, authentication headers and HTTP client.
+ *
+ * With an UploadAccounting, contents are hashed while sent and every upload is accounted for.
+ */
+public class StreamingUploader {
+
+    private static final String UPLOAD_PART = "upload";
+
+    private final ApiClient client;
+    private final UploadAccounting accounting;
+
+    public StreamingUploader(ApiClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param accounting accounting of the run uploads, none if null
+     */
+    public StreamingUploader(ApiClient client, UploadAccounting accounting) {
+        this.client = client;
+        this.accounting = accounting;
+    }
+
+    public void uploadDocumentFile(String workspaceId, String documentId, String version, int iteration,
+                                   BinarySource source) throws ApiException {
+        upload("/files/" + escape(workspaceId) + "/documents/" + escape(documentId) + "/" + escape(version)
+                + "/" + iteration, source);
+    }
+
+    public void uploadNativeCADFile(String workspaceId, String partNumber, String version, int iteration,
+                                    BinarySource source) throws ApiException {
+        upload("/files/" + escape(workspaceId) + "/parts/" + escape(partNumber) + "/" + escape(version)
+                + "/" + iteration + "/nativecad", source);
+    }
+
+    public void uploadAttachedFile(String workspaceId, String partNumber, String version, int iteration,
+                                   BinarySource source) throws ApiException {
+        upload("/files/" + escape(workspaceId) + "/parts/" + escape(partNumber) + "/" + escape(version)
+                + "/" + iteration + "/attachedfiles", source);
+    }
+
+    private void upload(String path, BinarySource source) throws ApiException {
+        // Contents already sent during the run have a known hash, others are hashed on the way
+        String knownHash = accounting != null ? accounting.getHash(source) : null;
+        SourceRequestBody sourceBody = new SourceRequestBody(source, accounting != null && knownHash == null);
+        RequestBody body = new MultipartBuilder()
+                .type(MultipartBuilder.FORM)
+                .addFormDataPart(UPLOAD_PART, source.getFileName(), sourceBody)
+                .build();
+
+        Request.Builder request = new Request.Builder()
+                .url(client.buildUrl(path, new ArrayList<Pair>()))
+                .post(body);
+        client.processHeaderParams(new HashMap<String, String>(), request);
+
+        client.execute(client.getHttpClient().newCall(request.build()));
+
+        if (accounting != null) {
+            accounting.uploaded(path + "/" + source.getFileName(), source,
+                    knownHash != null ? knownHash : sourceBody.hash, sourceBody.length);
+        }
+    }
+
+    private String escape(String pathParam) {
+        return client.escapeString(pathParam);
+    }
+
+    private static class SourceRequestBody extends RequestBody {
+        private final BinarySource source;
+        private final boolean hashing;
+        private final MediaType mediaType;
+        private volatile String hash;
+        private volatile long length;
+
+        SourceRequestBody(BinarySource source, boolean hashing) {
+            this.source = source;
+            this.hashing = hashing;
+            String contentType = URLConnection.guessContentTypeFromName(source.getFileName());
+            this.mediaType = MediaType.parse(contentType != null ? contentType : "application/octet-stream");
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return source.getLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            MessageDigest digest = hashing ? newDigest() : null;
+            try (InputStream in = source.open();
+                 Source stream = Okio.source(digest != null ? new DigestInputStream(in, digest) : in)) {
+                length = sink.writeAll(stream);
+            }
+            if (digest != null) {
+                hash = toHex(digest.digest());
+            }
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform has SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static String toHex(byte[] bytes) {
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fans independent calls out on a bounded pool of workers and collects failures by task key.
+ *
+ * Submitting blocks while the pool is busy, so a producer never gets further ahead than the
+ * configured concurrency. Batches of short lived phases may share one pool rather than start
+ * their own.
+ */
+public class TaskBatch implements AutoCloseable {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    /**
+     * A single call of the batch
+     */
+    public interface Task {
+        void run() throws ApiException, IOException, InterruptedException;
+    }
+
+    private final String name;
+    private final int concurrency;
+    private final ExecutorService executor;
+    private final boolean sharedExecutor;
+    private final Semaphore permits;
+    private final Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<String, Throwable>());
+
+    public TaskBatch(String name, int concurrency) {
+        this(name, concurrency, null);
+    }
+
+    /**
+     * Batch running on given pool, its own one if null. A given pool is shared with other
+     * batches: closing the batch waits for its tasks and leaves the pool running
+     */
+    public TaskBatch(String name, int concurrency, ExecutorService executor) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, got " + concurrency);
+        }
+        this.name = name;
+        this.concurrency = concurrency;
+        this.sharedExecutor = executor != null;
+        this.executor = executor != null
+                ? executor
+                : Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("sample-loader-" + name));
+        this.permits = new Semaphore(concurrency);
+    }
+
+    public void submit(final String key, final Task task) throws InterruptedException {
+        permits.acquire();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        failures.put(key, t);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Tells whether a task has failed so far, producers may use it to stop submitting early
+     */
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * Waits for every submitted task and returns the failures, keyed by task, in completion order
+     */
+    public Map<String, Throwable> await() throws InterruptedException {
+        permits.acquire(concurrency);
+        permits.release(concurrency);
+        synchronized (failures) {
+            return new LinkedHashMap<>(failures);
+        }
+    }
+
+    /**
+     * Waits for every submitted task, logs each failure and rethrows the first one
+     */
+    public void awaitOrThrow() throws ApiException, IOException, InterruptedException {
+        Map<String, Throwable> failed = await();
+        if (failed.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Throwable> failure : failed.entrySet()) {
+            LOGGER.log(Level.SEVERE, name + " failed for " + failure.getKey() + " : " + failure.getValue().getMessage());
+        }
+        SampleLoaderUtils.rethrow(failed.values().iterator().next());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (sharedExecutor) {
+            await();
+            return;
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * One HTTP call of a trace, as written by TraceRecorder and read by TraceReplayer.
+ *
+ * JSON bodies are kept as sent, passwords excepted, upload bodies are only described by their
+ * file name and size. Of the responses, only the id of a created entity is kept.
+ */
+class TraceRecord {
+
+    static final int MAGIC = 0x44444b54;
+    static final short VERSION = 2;
+
+    private static final byte NO_BODY = 0;
+    private static final byte INLINE_BODY = 1;
+    private static final byte UPLOAD_BODY = 2;
+
+    private static final String ID = "id";
+    private static final String REDACTED = "********";
+    private static final JsonParser PARSER = new JsonParser();
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+    /**
+     * Order in which calls started
+     */
+    long sequence;
+    /**
+     * How many calls had completed when this one started
+     */
+    int completedBefore;
+    /**
+     * Start time since the first call, and duration, in nanoseconds
+     */
+    long start;
+    long duration;
+    String method;
+    /**
+     * Encoded path and query, from the host root
+     */
+    String path;
+    int status;
+    String contentType;
+    byte[] body;
+    String fileName;
+    /**
+     * Size of the uploaded file without its multipart framing, or of the body
+     */
+    long length;
+    /**
+     * Id the server gave to the entity created by this call, null if none
+     */
+    String createdId;
+
+    boolean isUpload() {
+        return fileName != null;
+    }
+
+    static void writeHeader(DataOutputStream out, String workspaceId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(workspaceId);
+    }
+
+    /**
+     * Reads the header and returns the workspace id the trace was recorded on
+     */
+    static String readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a sample loader trace");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        return in.readUTF();
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(sequence);
+        out.writeInt(completedBefore);
+        out.writeLong(start);
+        out.writeLong(duration);
+        out.writeUTF(method);
+        out.writeUTF(path);
+        out.writeShort(status);
+        if (fileName != null) {
+            out.writeByte(UPLOAD_BODY);
+            out.writeUTF(contentType);
+            out.writeUTF(fileName);
+            out.writeLong(length);
+        } else if (body != null) {
+            out.writeByte(INLINE_BODY);
+            out.writeUTF(contentType != null ? contentType : "");
+            out.writeInt(body.length);
+            out.write(body);
+        } else {
+            out.writeByte(NO_BODY);
+        }
+        out.writeUTF(createdId != null ? createdId : "");
+    }
+
+    /**
+     * Reads the next record, null at the end of the trace
+     */
+    static TraceRecord readFrom(DataInputStream in) throws IOException {
+        TraceRecord record = new TraceRecord();
+        try {
+            record.sequence = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            record.completedBefore = in.readInt();
+            record.start = in.readLong();
+            record.duration = in.readLong();
+            record.method = in.readUTF();
+            record.path = in.readUTF();
+            record.status = in.readShort();
+            switch (in.readByte()) {
+                case UPLOAD_BODY:
+                    record.contentType = in.readUTF();
+                    record.fileName = in.readUTF();
+                    record.length = in.readLong();
+                    break;
+                case INLINE_BODY:
+                    record.contentType = in.readUTF();
+                    record.body = new byte[in.readInt()];
+                    in.readFully(record.body);
+                    record.length = record.body.length;
+                    break;
+                default:
+                    break;
+            }
+            String createdId = in.readUTF();
+            record.createdId = createdId.isEmpty() ? null : createdId;
+        } catch (EOFException e) {
+            // Record cut by an interrupted recording
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Id field of given JSON object, null if the body is not an object with an id
+     */
+    static String id(byte[] json) {
+        try {
+            JsonElement element = PARSER.parse(new String(json, StandardCharsets.UTF_8));
+            if (element.isJsonObject()) {
+                JsonElement id = element.getAsJsonObject().get(ID);
+                if (id != null && id.isJsonPrimitive()) {
+                    return id.getAsString();
+                }
+            }
+        } catch (JsonParseException e) {
+            // Not JSON, no id
+        }
+        return null;
+    }
+
+    /**
+     * Given JSON body with the values of its password fields, at any depth, masked. A body that is
+     * not JSON is returned as is
+     */
+    static byte[] redact(byte[] json) {
+        JsonElement element;
+        try {
+            element = PARSER.parse(new String(json, StandardCharsets.UTF_8));
+        } catch (JsonParseException e) {
+            return json;
+        }
+        return redact(element) ? GSON.toJson(element).getBytes(StandardCharsets.UTF_8) : json;
+    }
+
+    /**
+     * Masks the password fields of given element, telling whether there were any
+     */
+    private static boolean redact(JsonElement element) {
+        boolean redacted = false;
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> field : element.getAsJsonObject().entrySet()) {
+                if (field.getKey().toLowerCase().contains("password") && field.getValue().isJsonPrimitive()) {
+                    field.setValue(new JsonPrimitive(REDACTED));
+                    redacted = true;
+                } else {
+                    redacted |= redact(field.getValue());
+                }
+            }
+        } else if (element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                redacted |= redact(item);
+            }
+        }
+        return redacted;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.squareup.okhttp.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records every HTTP call of a load into a compressed binary trace, for TraceReplayer.
+ *
+ * Calls are recorded as the API services make them, retries included in their duration. JSON
+ * bodies are recorded as sent, with their password fields masked: account creations and logins
+ * made on the guest client are recorded too. Uploads are streamed through and only their file
+ * size and name are kept. Authentication headers are not recorded. Of a creation response, only
+ * the id given by the server is kept, for the replay to find the entity it created.
+ *
+ * A trace that cannot be written, or is already closed, drops its records. The calls themselves
+ * go on unaffected.
+ */
+public class TraceRecorder implements Interceptor, Closeable {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final int HEAD_SIZE = 1024;
+    private static final Pattern FILE_NAME = Pattern.compile("filename=\"([^\"]*)\"");
+
+    private final File file;
+    private final DataOutputStream out;
+    private final long origin = System.nanoTime();
+    private long nextSequence;
+    private int completed;
+    private long records;
+    private long dropped;
+    private boolean stopped;
+
+    public TraceRecorder(File file, String workspaceId) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+        TraceRecord.writeHeader(out, workspaceId);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+
+        TraceRecord record = new TraceRecord();
+        synchronized (this) {
+            record.sequence = nextSequence++;
+            record.completedBefore = completed;
+        }
+        record.method = request.method();
+        record.path = request.httpUrl().encodedPath()
+                + (request.httpUrl().encodedQuery() != null ? "?" + request.httpUrl().encodedQuery() : "");
+
+        CountingBody upload = null;
+        RequestBody body = request.body();
+        if (body != null) {
+            MediaType contentType = body.contentType();
+            record.contentType = contentType != null ? contentType.toString() : null;
+            if (contentType != null && "multipart".equals(contentType.type())) {
+                upload = new CountingBody(body);
+                request = request.newBuilder().method(request.method(), upload).build();
+            } else {
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                byte[] content = buffer.readByteArray();
+                record.body = isJson(contentType) ? TraceRecord.redact(content) : content;
+                request = request.newBuilder().method(request.method(), RequestBody.create(contentType, content)).build();
+            }
+        }
+
+        record.start = System.nanoTime() - origin;
+        Response response = null;
+        try {
+            response = chain.proceed(request);
+            if ("POST".equals(record.method) && response.isSuccessful() && isJson(response.body().contentType())) {
+                // Creation responses are small, read them whole to keep the created id
+                byte[] content = response.body().bytes();
+                record.createdId = TraceRecord.id(content);
+                response = response.newBuilder().body(ResponseBody.create(response.body().contentType(), content)).build();
+            }
+            return response;
+        } finally {
+            record.duration = System.nanoTime() - origin - record.start;
+            record.status = response != null ? response.code() : -1;
+            if (upload != null) {
+                record.fileName = upload.fileName();
+                record.length = upload.fileLength();
+            }
+            write(record);
+        }
+    }
+
+    private static boolean isJson(MediaType contentType) {
+        return contentType != null && "json".equals(contentType.subtype());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        stopped = true;
+        out.close();
+        LOGGER.info(records + " calls recorded to " + file
+                + (dropped > 0 ? ", " + dropped + " calls dropped" : ""));
+    }
+
+    /**
+     * Writes the record of a completed call, never failing the call: a write error is logged once
+     * and stops the recording
+     */
+    private synchronized void write(TraceRecord record) {
+        completed++;
+        if (stopped) {
+            dropped++;
+            return;
+        }
+        try {
+            record.writeTo(out);
+            records++;
+        } catch (IOException e) {
+            stopped = true;
+            dropped++;
+            LOGGER.log(Level.WARNING, "Cannot write to trace " + file + ", next calls are not recorded", e);
+        }
+    }
+
+    /**
+     * Forwards a multipart body, counting its bytes and keeping its head to find the file name
+     * and the size of the multipart framing
+     */
+    private static class CountingBody extends RequestBody {
+        private final RequestBody delegate;
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private long length;
+
+        CountingBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            length = 0;
+            head.reset();
+            BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    if (head.size() < HEAD_SIZE) {
+                        source.copyTo(head, 0, Math.min(byteCount, HEAD_SIZE - head.size()));
+                    }
+                    length += byteCount;
+                    super.write(source, byteCount);
+                }
+            });
+            delegate.writeTo(counting);
+            counting.emit();
+        }
+
+        /**
+         * Length of the file alone, without the framing of its single part: the head up to the
+         * blank line ending the part headers, and the closing boundary, both rebuilt on replay
+         */
+        long fileLength() {
+            String text = new String(head.toByteArray(), StandardCharsets.ISO_8859_1);
+            // The head starts with the boundary line, "--" boundary CRLF
+            int boundaryLineEnd = text.indexOf("\r\n");
+            int headersEnd = text.indexOf("\r\n\r\n");
+            if (!text.startsWith("--") || boundaryLineEnd < 0 || headersEnd < 0) {
+                return length;
+            }
+            // CRLF "--" boundary "--" CRLF after the file
+            long trailer = boundaryLineEnd + 6;
+            return Math.max(0, length - (headersEnd + 4) - trailer);
+        }
+
+        String fileName() {
+            Matcher matcher = FILE_NAME.matcher(new String(head.toByteArray(), StandardCharsets.ISO_8859_1));
+            return matcher.find() ? matcher.group(1) : "upload";
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.squareup.okhttp.*;
+import okio.BufferedSink;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sends the calls of a trace recorded by TraceRecorder again, to benchmark a server without the loader.
+ *
+ * Calls are sent in the order they started. A call waits until as many calls have completed as
+ * had completed when it was recorded, so that a call is not sent before the calls it depends on,
+ * whatever the parallelism. Calls are sent either at their recorded pace or as fast as possible.
+ * The recorded workspace id is replaced everywhere, so that a trace can be replayed many times.
+ * The ids the server gave to created entities, such as milestones, change items or baselines,
+ * are replaced in the paths that follow the collection they were created in, with the ids the
+ * target server gives on replay.
+ *
+ * Every call is authenticated as the replaying user, who must be the user the trace was recorded
+ * with; recorded logins are skipped. Uploads are sent with generated content of the recorded size.
+ *
+ * A replay does not reproduce everything:
+ * - server given ids found in request bodies, rather than in paths, are sent as recorded
+ * - recorded passwords are masked, so an account created by the load is created again with
+ *   another password
+ * - uploads carry other content than the recorded files, so their conversion may differ or fail
+ * - calls that failed when recorded, or depend on a failed call, may behave otherwise
+ */
+public class TraceReplayer {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private static final String LOGIN_PATH = "/auth/login";
+    private static final String UPLOAD_PART = "upload";
+    private static final byte[] FILLER = new byte[8192];
+
+    static {
+        new Random(0).nextBytes(FILLER);
+    }
+
+    public enum Pacing {
+        /**
+         * Calls start at the time they started when recorded
+         */
+        ORIGINAL,
+        /**
+         * Calls start as soon as they may
+         */
+        FASTEST
+    }
+
+    private final ApiClient client;
+    private final String url;
+    private final String workspaceId;
+    private Pacing pacing = Pacing.FASTEST;
+    private int concurrency = 4;
+
+    private final Object progress = new Object();
+    private long completed;
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    // Replayed id of each recorded created entity, by collection segment and recorded id
+    private final ConcurrentMap<String, String> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param client      client authenticated as the user the trace was recorded with
+     * @param url         root url of the target server, recorded paths are appended to it
+     * @param workspaceId workspace the recorded one is replaced with
+     */
+    public TraceReplayer(ApiClient client, String url, String workspaceId) {
+        this.client = client;
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.workspaceId = workspaceId;
+    }
+
+    public void setPacing(Pacing pacing) {
+        this.pacing = pacing;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void replay(File trace) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(trace))));
+             TaskBatch batch = new TaskBatch("replay", concurrency)) {
+
+            String recordedWorkspaceId = TraceRecord.readHeader(in);
+            Pattern workspace = Pattern.compile("(?<![\\w-])" + Pattern.quote(recordedWorkspaceId) + "(?![\\w-])");
+            LOGGER.info("Replaying " + trace + " on " + url + ", workspace " + recordedWorkspaceId + " replaced with "
+                    + workspaceId + ", " + pacing.name().toLowerCase() + " pace, " + concurrency + " at a time...");
+
+            // Records are written as calls end, put them back in the order calls started
+            PriorityQueue<TraceRecord> pending = new PriorityQueue<>(64, new Comparator<TraceRecord>() {
+                @Override
+                public int compare(TraceRecord a, TraceRecord b) {
+                    return Long.compare(a.sequence, b.sequence);
+                }
+            });
+            long expected = 0;
+            long origin = System.nanoTime();
+            long sent = 0;
+
+            for (TraceRecord record; (record = TraceRecord.readFrom(in)) != null; ) {
+                pending.add(record);
+                while (!pending.isEmpty() && pending.peek().sequence == expected) {
+                    dispatch(batch, pending.poll(), workspace, origin);
+                    expected++;
+                    sent++;
+                }
+            }
+            // Calls still running when the recording stopped
+            while (!pending.isEmpty()) {
+                dispatch(batch, pending.poll(), workspace, origin);
+                sent++;
+            }
+
+            batch.await();
+            logStatistics(sent, System.nanoTime() - origin);
+        }
+    }
+
+    private void dispatch(TaskBatch batch, final TraceRecord record, final Pattern workspace, long origin) throws InterruptedException {
+        if (record.path.endsWith(LOGIN_PATH)) {
+            skipped.incrementAndGet();
+            completed();
+            return;
+        }
+
+        synchronized (progress) {
+            while (completed < record.completedBefore) {
+                progress.wait();
+            }
+        }
+        if (pacing == Pacing.ORIGINAL) {
+            long delay = origin + record.start - System.nanoTime();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+
+        batch.submit(record.method + " " + record.path, new TaskBatch.Task() {
+            @Override
+            public void run() {
+                try {
+                    send(record, workspace);
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("Replay of " + record.method + " " + record.path + " failed : " + e.getMessage());
+                    }
+                } finally {
+                    completed();
+                }
+            }
+        });
+    }
+
+    private void send(TraceRecord record, Pattern workspace) throws IOException {
+        Request.Builder request = new Request.Builder().url(url + rewritePath(workspace, record.path));
+        client.processHeaderParams(new HashMap<String, String>(), request);
+
+        RequestBody body = null;
+        if (record.isUpload()) {
+            body = new MultipartBuilder()
+                    .type(MultipartBuilder.FORM)
+                    .addFormDataPart(UPLOAD_PART, record.fileName, new FillerBody(record.length))
+                    .build();
+        } else if (record.body != null) {
+            MediaType contentType = record.contentType.isEmpty() ? null : MediaType.parse(record.contentType);
+            byte[] content = rewrite(workspace, new String(record.body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            body = RequestBody.create(contentType, content);
+        } else if ("POST".equals(record.method) || "PUT".equals(record.method)) {
+            body = RequestBody.create(null, new byte[0]);
+        }
+        request.method(record.method, body);
+
+        Response response = client.getHttpClient().newCall(request.build()).execute();
+        if (record.createdId != null && response.isSuccessful()) {
+            String createdId = TraceRecord.id(response.body().bytes());
+            if (createdId != null && !createdId.equals(record.createdId)) {
+                ids.put(collection(record.path) + '/' + record.createdId, createdId);
+            }
+        } else {
+            response.body().close();
+        }
+        count(response.code());
+    }
+
+    private String rewrite(Pattern workspace, String text) {
+        return workspace.matcher(text).replaceAll(Matcher.quoteReplacement(workspaceId));
+    }
+
+    /**
+     * Path with the workspace id and the ids of the recorded created entities replaced
+     */
+    private String rewritePath(Pattern workspace, String path) {
+        path = rewrite(workspace, path);
+        if (ids.isEmpty()) {
+            return path;
+        }
+        int queryStart = path.indexOf('?');
+        String[] segments = (queryStart < 0 ? path : path.substring(0, queryStart)).split("/", -1);
+        StringBuilder rewritten = new StringBuilder(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            String id = ids.get(segments[i - 1] + '/' + segments[i]);
+            rewritten.append('/').append(id != null ? id : segments[i]);
+        }
+        return queryStart < 0 ? rewritten.toString() : rewritten.append(path.substring(queryStart)).toString();
+    }
+
+    /**
+     * Last segment of the path of a creation, naming the collection the entity is created in
+     */
+    private static String collection(String path) {
+        int queryStart = path.indexOf('?');
+        String collection = queryStart < 0 ? path : path.substring(0, queryStart);
+        if (collection.endsWith("/")) {
+            collection = collection.substring(0, collection.length() - 1);
+        }
+        return collection.substring(collection.lastIndexOf('/') + 1);
+    }
+
+    private void completed() {
+        synchronized (progress) {
+            completed++;
+            progress.notifyAll();
+        }
+    }
+
+    private void count(int status) {
+        AtomicLong counter = statuses.get(status);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = statuses.putIfAbsent(status, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private void logStatistics(long sent, long elapsed) {
+        double seconds = elapsed / 1e9;
+        StringBuilder summary = new StringBuilder("Replayed " + sent + " calls in " + String.format("%.1f", seconds)
+                + " s (" + String.format("%.1f", sent / Math.max(seconds, 1e-9)) + " calls/s) :");
+        for (Map.Entry<Integer, AtomicLong> status : new TreeMap<>(statuses).entrySet()) {
+            summary.append(" HTTP ").append(status.getKey()).append(' ').append(status.getValue().get()).append(',');
+        }
+        summary.append(' ').append(failures.get()).append(" failed, ").append(skipped.get()).append(" logins skipped");
+        LOGGER.info(summary.toString());
+    }
+
+    /**
+     * Body of given size, made of a fixed random pattern
+     */
+    private static class FillerBody extends RequestBody {
+        private final long length;
+
+        FillerBody(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaType.parse("application/octet-stream");
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            for (long remaining = length; remaining > 0; ) {
+                int count = (int) Math.min(remaining, FILLER.length);
+                sink.write(FILLER, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+}
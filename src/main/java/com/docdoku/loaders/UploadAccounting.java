@@ -0,0 +1,78 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Per run accounting of uploaded contents, by SHA-256 hash.
+ *
+ * The hash of a content is computed while it is first sent and then remembered by content key,
+ * so each payload is hashed once. Nothing is deduplicated: the server stores a binary per target
+ * and cannot link a file to a binary it already stores, so every upload is transferred. The same
+ * content sent to another target is counted as a repeat, which tells how much a content
+ * addressed upload would save.
+ */
+public class UploadAccounting {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    private final ConcurrentMap<String, String> hashesByContentKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> firstTargetsByHash = new ConcurrentHashMap<>();
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong repeats = new AtomicLong();
+    private final AtomicLong repeatedBytes = new AtomicLong();
+
+    /**
+     * Hash of the source content if it was already sent during the run, null otherwise
+     */
+    public String getHash(BinarySource source) {
+        return hashesByContentKey.get(source.getContentKey());
+    }
+
+    /**
+     * Records a content sent to a target
+     */
+    public void uploaded(String target, BinarySource source, String hash, long length) {
+        hashesByContentKey.putIfAbsent(source.getContentKey(), hash);
+        uploads.incrementAndGet();
+        bytes.addAndGet(length);
+
+        String firstTarget = firstTargetsByHash.putIfAbsent(hash, target);
+        if (firstTarget != null && !firstTarget.equals(target)) {
+            repeats.incrementAndGet();
+            repeatedBytes.addAndGet(length);
+        }
+    }
+
+    public void logStatistics() {
+        LOGGER.info("Uploads : " + uploads.get() + " files sent (" + bytes.get() + " bytes), "
+                + firstTargetsByHash.size() + " distinct contents, "
+                + repeats.get() + " repeats of a content already sent to another target ("
+                + repeatedBytes.get() + " bytes)");
+    }
+}
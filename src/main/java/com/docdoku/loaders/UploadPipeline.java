@@ -0,0 +1,115 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+
+import java.io.IOException;
+
+/**
+ * Upload stage of a load phase: binary uploads are queued as the phase declares them,
+ * sent in parallel, and joined before the phase checks its items in. Contents are streamed
+ * from their source, sample resources are not extracted to disk, and accounted for in the
+ * upload accounting of the run. Uploaded native CAD files are expected by the conversion
+ * awaiter of the stage, if any, as soon as their upload ends.
+ */
+public class UploadPipeline implements AutoCloseable {
+
+    private final StreamingUploader uploader;
+    private final String workspaceId;
+    private final TaskBatch batch;
+    private ConversionAwaiter conversions;
+
+    public UploadPipeline(ApiClient client, String workspaceId, int concurrency, UploadAccounting accounting) {
+        this.uploader = new StreamingUploader(client, accounting);
+        this.workspaceId = workspaceId;
+        this.batch = new TaskBatch("uploads", concurrency);
+    }
+
+    /**
+     * Sets the awaiter expecting the conversion of the native CAD files uploaded next, none if null
+     */
+    public void setConversions(ConversionAwaiter conversions) {
+        this.conversions = conversions;
+    }
+
+    public void documentFile(String documentId, String version, int iteration,
+                             String resourceName) throws InterruptedException {
+        documentFile(documentId, version, iteration, BinarySources.resource(resourceName));
+    }
+
+    public void documentFile(final String documentId, final String version, final int iteration,
+                             final BinarySource source) throws InterruptedException {
+        batch.submit(documentId + "-" + version + "-" + iteration + "/" + source.getFileName(), new TaskBatch.Task() {
+            @Override
+            public void run() throws ApiException {
+                uploader.uploadDocumentFile(workspaceId, documentId, version, iteration, source);
+            }
+        });
+    }
+
+    public void nativeCADFile(String partNumber, String version, int iteration,
+                              String resourceName) throws InterruptedException {
+        nativeCADFile(partNumber, version, iteration, BinarySources.resource(resourceName));
+    }
+
+    public void nativeCADFile(final String partNumber, final String version, final int iteration,
+                              final BinarySource source) throws InterruptedException {
+        final ConversionAwaiter conversions = this.conversions;
+        batch.submit(partNumber + "-" + version + "-" + iteration + "/" + source.getFileName(), new TaskBatch.Task() {
+            @Override
+            public void run() throws ApiException {
+                uploader.uploadNativeCADFile(workspaceId, partNumber, version, iteration, source);
+                if (conversions != null) {
+                    conversions.expect(partNumber, version, iteration, source.getFileName());
+                }
+            }
+        });
+    }
+
+    public void attachedFile(String partNumber, String version, int iteration,
+                             String resourceName) throws InterruptedException {
+        attachedFile(partNumber, version, iteration, BinarySources.resource(resourceName));
+    }
+
+    public void attachedFile(final String partNumber, final String version, final int iteration,
+                             final BinarySource source) throws InterruptedException {
+        batch.submit(partNumber + "-" + version + "-" + iteration + "/" + source.getFileName(), new TaskBatch.Task() {
+            @Override
+            public void run() throws ApiException {
+                uploader.uploadAttachedFile(workspaceId, partNumber, version, iteration, source);
+            }
+        });
+    }
+
+    /**
+     * Waits for every queued upload, rethrowing the first failure
+     */
+    public void join() throws ApiException, IOException, InterruptedException {
+        batch.awaitOrThrow();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        batch.close();
+    }
+}
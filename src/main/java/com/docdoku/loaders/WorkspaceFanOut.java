@@ -0,0 +1,102 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Seeds several independent workspaces at the same time, each one with its own sample loader
+ */
+public class WorkspaceFanOut {
+
+    private static final Logger LOGGER = SampleLoaderLogger.getLOGGER();
+
+    /**
+     * Creates the loader of a workspace, the first workspace has index 0
+     */
+    public interface LoaderFactory {
+        SampleLoader create(String workspaceId, int index);
+    }
+
+    private final LoaderFactory factory;
+    private final int concurrency;
+
+    public WorkspaceFanOut(LoaderFactory factory, int concurrency) {
+        this.factory = factory;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Loads every given workspace, logs a summary and returns true if all of them succeeded
+     */
+    public boolean load(List<String> workspaceIds) throws InterruptedException {
+        final Map<String, Long> durations = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        Map<String, Throwable> failures;
+
+        try (TaskBatch batch = new TaskBatch("workspaces", concurrency)) {
+            for (int i = 0; i < workspaceIds.size(); i++) {
+                final String workspaceId = workspaceIds.get(i);
+                final int index = i;
+
+                batch.submit(workspaceId, new TaskBatch.Task() {
+                    @Override
+                    public void run() throws ApiException, IOException, InterruptedException {
+                        long workspaceStart = System.nanoTime();
+                        try {
+                            factory.create(workspaceId, index).load();
+                            LOGGER.info("Workspace " + workspaceId + " loaded");
+                        } finally {
+                            durations.put(workspaceId, System.nanoTime() - workspaceStart);
+                        }
+                    }
+                });
+            }
+            failures = batch.await();
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append("Loaded ").append(workspaceIds.size() - failures.size()).append("/").append(workspaceIds.size())
+                .append(" workspaces in ").append(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).append(" s");
+
+        for (String workspaceId : workspaceIds) {
+            Throwable failure = failures.get(workspaceId);
+            Long duration = durations.get(workspaceId);
+            summary.append("\n  ").append(workspaceId).append(" : ").append(failure == null ? "OK" : "FAILED");
+            if (duration != null) {
+                summary.append(" (").append(TimeUnit.NANOSECONDS.toSeconds(duration)).append(" s)");
+            }
+            if (failure != null) {
+                summary.append(" - ").append(failure.getMessage());
+            }
+        }
+
+        LOGGER.info(summary.toString());
+        return failures.isEmpty();
+    }
+}
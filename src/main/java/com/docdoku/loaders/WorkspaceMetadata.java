@@ -0,0 +1,166 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.docdoku.plm.api.client.ApiClient;
+import com.docdoku.plm.api.client.ApiException;
+import com.docdoku.plm.api.models.*;
+import com.docdoku.plm.api.models.utils.WorkflowHelper;
+import com.docdoku.plm.api.services.WorkspacesApi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Metadata of a workspace read by several load phases: workflow models, the role mappings
+ * resolved from their default assignments, and user groups.
+ *
+ * Each item is fetched on first use, concurrent callers wait for the same fetch, and a failed
+ * fetch is tried again by the next caller. The loader reports its own writes so that the items
+ * they change are fetched again. Lists are unmodifiable and DTOs are shared between callers,
+ * which must not modify them.
+ */
+public class WorkspaceMetadata {
+
+    private static final String GROUPS = "groups";
+
+    private final String workspaceId;
+    private final ConcurrentMap<String, Future<WorkflowModelDTO>> workflowModels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Future<List<RoleMappingDTO>>> roleMappings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Future<List<UserGroupDTO>>> groups = new ConcurrentHashMap<>();
+
+    public WorkspaceMetadata(String workspaceId) {
+        this.workspaceId = workspaceId;
+    }
+
+    public WorkflowModelDTO getWorkflowModel(final ApiClient client, final String workflowModelId) throws ApiException {
+        return get(workflowModels, workflowModelId, new Callable<WorkflowModelDTO>() {
+            @Override
+            public WorkflowModelDTO call() throws ApiException {
+                return new WorkspacesApi(client).getWorkflowModelInWorkspace(workspaceId, workflowModelId);
+            }
+        });
+    }
+
+    /**
+     * Returns the role mapping assigning every role of the workflow model to its default users and groups
+     */
+    public List<RoleMappingDTO> getRoleMapping(final ApiClient client, final String workflowModelId) throws ApiException {
+        return get(roleMappings, workflowModelId, new Callable<List<RoleMappingDTO>>() {
+            @Override
+            public List<RoleMappingDTO> call() throws ApiException {
+                return Collections.unmodifiableList(resolveDefaultRoles(getWorkflowModel(client, workflowModelId)));
+            }
+        });
+    }
+
+    public List<UserGroupDTO> getGroups(final ApiClient client) throws ApiException {
+        return get(groups, GROUPS, new Callable<List<UserGroupDTO>>() {
+            @Override
+            public List<UserGroupDTO> call() throws ApiException {
+                return Collections.unmodifiableList(new WorkspacesApi(client).getGroups(workspaceId));
+            }
+        });
+    }
+
+    /**
+     * To be called once the workflow model is created or updated
+     */
+    public void workflowModelChanged(String workflowModelId) {
+        workflowModels.remove(workflowModelId);
+        roleMappings.remove(workflowModelId);
+    }
+
+    /**
+     * To be called once roles are created or updated, workflow models embed their roles
+     */
+    public void rolesChanged() {
+        workflowModels.clear();
+        roleMappings.clear();
+    }
+
+    /**
+     * To be called once groups are created or updated
+     */
+    public void groupsChanged() {
+        groups.clear();
+    }
+
+    static List<RoleMappingDTO> resolveDefaultRoles(WorkflowModelDTO workflowModel) {
+        Set<RoleDTO> rolesInvolved = WorkflowHelper.getRolesInvolved(workflowModel);
+        List<RoleMappingDTO> roleMapping = new ArrayList<>();
+
+        // we need to resolve the roles (use defaults assignments)
+        for (RoleDTO role : rolesInvolved) {
+
+            RoleMappingDTO roleMappingDTO = new RoleMappingDTO();
+            roleMappingDTO.setRoleName(role.getName());
+
+            for (UserGroupDTO group : role.getDefaultAssignedGroups()) {
+
+                roleMappingDTO.getGroupIds().add(group.getId());
+            }
+            for (UserDTO user : role.getDefaultAssignedUsers()) {
+                roleMappingDTO.getUserLogins().add(user.getLogin());
+            }
+            roleMapping.add(roleMappingDTO);
+        }
+
+        return roleMapping;
+    }
+
+    private static <T> T get(ConcurrentMap<String, Future<T>> cache, String key, Callable<T> fetch) throws ApiException {
+        Future<T> value = cache.get(key);
+
+        if (value == null) {
+            FutureTask<T> task = new FutureTask<>(fetch);
+            value = cache.putIfAbsent(key, task);
+            if (value == null) {
+                value = task;
+                task.run();
+            }
+        }
+
+        try {
+            return value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(e);
+        } catch (ExecutionException e) {
+            // Let a later call try again
+            cache.remove(key, value);
+            if (e.getCause() instanceof ApiException) {
+                throw (ApiException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new ApiException(e.getCause());
+        }
+    }
+}
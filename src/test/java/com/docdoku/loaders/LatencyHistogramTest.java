@@ -0,0 +1,95 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final long HOUR = 3600L * 1000 * 1000;
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void shortDurationsAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 0; micros < 128; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(128, histogram.getCount());
+        assertEquals(63, histogram.getMean());
+        assertEquals(127, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(126, histogram.getPercentile(99));
+        assertEquals(127, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void longDurationsStayWithinBucketPrecision() {
+        for (long micros = 128; micros < HOUR; micros = micros * 5 / 3 + 1) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(micros);
+            histogram.record(HOUR);
+            long reported = histogram.getPercentile(50);
+            assertTrue(micros + " reported as " + reported, reported >= micros);
+            assertTrue(micros + " reported as " + reported, reported <= micros + micros / 62);
+        }
+    }
+
+    @Test
+    public void bucketBoundariesAreNotMerged() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(255);
+        histogram.record(256);
+        assertEquals(255, histogram.getPercentile(50));
+        assertEquals(256, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void outOfRangeDurationsAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getMax());
+        histogram.record(2 * HOUR);
+        assertEquals(HOUR, histogram.getMax());
+        assertEquals(HOUR, histogram.getPercentile(100));
+        assertEquals(2, histogram.getCount());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PhaseSchedulerTest {
+
+    private final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+
+    private PhaseScheduler.Phase phase(final String name) {
+        return new PhaseScheduler.Phase() {
+            @Override
+            public void run() {
+                runs.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void runsPhasesAfterTheirPrerequisitesInDeclarationOrder() throws Exception {
+        PhaseScheduler scheduler = new PhaseScheduler(1);
+        scheduler.addPhase("users", phase("users"));
+        scheduler.addPhase("folders", phase("folders"), "users");
+        scheduler.addPhase("groups", phase("groups"), "users");
+        scheduler.addPhase("documents", phase("documents"), "folders");
+        scheduler.run();
+        assertEquals(Arrays.asList("users", "folders", "groups", "documents"), runs);
+    }
+
+    @Test
+    public void startsTheReadyPhaseDeclaredFirstRatherThanTheLastReleased() throws Exception {
+        PhaseScheduler scheduler = new PhaseScheduler(1);
+        scheduler.addPhase("users", phase("users"));
+        scheduler.addPhase("documents", phase("documents"), "folders");
+        scheduler.addPhase("folders", phase("folders"));
+        scheduler.addPhase("groups", phase("groups"));
+        scheduler.run();
+        // Documents become ready after groups, but are declared before them
+        assertEquals(Arrays.asList("users", "folders", "documents", "groups"), runs);
+    }
+
+    @Test
+    public void rejectsACycleBeforeRunningAnyPhase() throws Exception {
+        PhaseScheduler scheduler = new PhaseScheduler(2);
+        scheduler.addPhase("users", phase("users"));
+        scheduler.addPhase("parts", phase("parts"), "users", "products");
+        scheduler.addPhase("products", phase("products"), "parts");
+        try {
+            scheduler.run();
+            fail("The cycle between parts and products was not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("cycle"));
+        }
+        assertTrue(runs.isEmpty());
+    }
+
+    @Test
+    public void rejectsAPhaseRequiringItself() throws Exception {
+        PhaseScheduler scheduler = new PhaseScheduler(1);
+        scheduler.addPhase("users", phase("users"), "users");
+        try {
+            scheduler.run();
+            fail("The phase requiring itself was not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("cycle"));
+        }
+        assertTrue(runs.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAnUnknownPrerequisite() throws Exception {
+        PhaseScheduler scheduler = new PhaseScheduler(1);
+        scheduler.addPhase("folders", phase("folders"), "workspace");
+        scheduler.run();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAPhaseDeclaredTwice() {
+        PhaseScheduler scheduler = new PhaseScheduler(1);
+        scheduler.addPhase("users", phase("users"));
+        scheduler.addPhase("users", phase("users"));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryInterceptorTest {
+
+    private static final Request REQUEST = new Request.Builder()
+            .url("http://localhost:8080/api/workspaces/w1/parts/P-001-A")
+            .build();
+
+    // Stands for a connection reset in a scripted chain
+    private static final Response RESET = response(0, null);
+
+    /**
+     * Chain answering the calls with the given responses, in order
+     */
+    private static class ScriptedChain implements Interceptor.Chain {
+        private final Deque<Response> responses = new ArrayDeque<>();
+        private int calls;
+
+        ScriptedChain(Response... responses) {
+            this.responses.addAll(Arrays.asList(responses));
+        }
+
+        @Override
+        public Request request() {
+            return REQUEST;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            calls++;
+            Response response = responses.poll();
+            if (response == RESET) {
+                throw new SocketException("Connection reset");
+            }
+            return response;
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static Response response(int code, String retryAfter) {
+        Response.Builder builder = new Response.Builder()
+                .request(REQUEST)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse("application/json"), ""));
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToTheMaximum() {
+        RetryInterceptor interceptor = new RetryInterceptor();
+        long[] ceilings = {200, 400, 800, 1600, 3200, 6400, 10000, 10000};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            long highest = 0;
+            for (int i = 0; i < 2000; i++) {
+                long delay = interceptor.delay(attempt, null);
+                assertTrue("Attempt " + attempt + " waited " + delay, delay >= 0 && delay <= ceilings[attempt - 1]);
+                highest = Math.max(highest, delay);
+            }
+            assertTrue("Attempt " + attempt + " never waited over half its ceiling", highest > ceilings[attempt - 1] / 2);
+        }
+        assertTrue(interceptor.delay(1000, null) <= 10000);
+    }
+
+    @Test
+    public void retryAfterOverridesTheBackoff() {
+        RetryInterceptor interceptor = new RetryInterceptor();
+        assertEquals(3000, interceptor.delay(1, response(503, "3")));
+        assertEquals(0, interceptor.delay(4, response(429, " 0 ")));
+        assertEquals(10000, interceptor.delay(1, response(503, "120")));
+    }
+
+    @Test
+    public void retryAfterOutOfRangeIsClamped() {
+        RetryInterceptor interceptor = new RetryInterceptor();
+        assertEquals(0, interceptor.delay(1, response(503, "-5")));
+        assertEquals(10000, interceptor.delay(1, response(503, String.valueOf(Long.MAX_VALUE))));
+    }
+
+    @Test
+    public void retryAfterDateFallsBackToTheBackoff() {
+        long delay = new RetryInterceptor().delay(1, response(503, "Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertTrue(delay >= 0 && delay <= 200);
+    }
+
+    @Test
+    public void retriesOverloadedCallsUntilTheyPass() throws IOException {
+        Response ok = response(200, null);
+        ScriptedChain chain = new ScriptedChain(response(503, "0"), response(429, "0"), ok);
+        assertSame(ok, new RetryInterceptor().intercept(chain));
+        assertEquals(3, chain.calls);
+    }
+
+    @Test
+    public void returnsOtherErrorsAtOnce() throws IOException {
+        Response conflict = response(409, "0");
+        ScriptedChain chain = new ScriptedChain(conflict, response(200, null));
+        assertSame(conflict, new RetryInterceptor().intercept(chain));
+        assertEquals(1, chain.calls);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws IOException {
+        Response last = response(502, "0");
+        ScriptedChain chain = new ScriptedChain(response(502, "0"), last, response(200, null));
+        RetryInterceptor interceptor = new RetryInterceptor();
+        interceptor.setMaxAttempts(2);
+        assertSame(last, interceptor.intercept(chain));
+        assertEquals(2, chain.calls);
+    }
+
+    @Test
+    public void givesUpOnceTheBudgetIsSpent() throws IOException {
+        RetryInterceptor interceptor = new RetryInterceptor();
+        interceptor.setBudget(1);
+        ScriptedChain chain = new ScriptedChain(response(504, "0"), response(504, "0"), response(200, null));
+        assertEquals(504, interceptor.intercept(chain).code());
+        assertEquals(2, chain.calls);
+    }
+
+    @Test
+    public void rethrowsTheConnectionErrorOfTheLastAttempt() throws IOException {
+        RetryInterceptor interceptor = new RetryInterceptor();
+        interceptor.setMaxAttempts(2);
+        ScriptedChain chain = new ScriptedChain(RESET, RESET);
+        try {
+            interceptor.intercept(chain);
+            fail("The connection reset was not rethrown");
+        } catch (SocketException e) {
+            assertEquals(2, chain.calls);
+        }
+    }
+
+    @Test
+    public void endpointsMaskIdentifiersByPosition() {
+        assertEquals("GET /api/workspaces/*/parts/*", endpoint("/api/workspaces/w1/parts/P-001-A"));
+        assertEquals("GET /api/workspaces/*/folders/*/documents", endpoint("/api/workspaces/demo/folders/docs/documents"));
+        assertEquals("GET /api/workspaces/*/changes/issues/*/acl", endpoint("/api/workspaces/demo/changes/issues/12/acl"));
+        assertEquals("GET /api/workspaces/*/product-baselines", endpoint("/api/workspaces/demo/product-baselines"));
+        // An id which names a collection does not hide the next segment
+        assertEquals("GET /api/workspaces/*/users/*/workspaces", endpoint("/api/workspaces/demo/users/parts/workspaces"));
+        assertEquals("GET /api/files/*/documents/*/*/*", endpoint("/api/files/demo/documents/spec/A/1"));
+        assertEquals("GET /api/auth/login", endpoint("/api/auth/login"));
+    }
+
+    private static String endpoint(String path) {
+        return RetryInterceptor.endpoint(new Request.Builder().url("http://localhost:8080" + path).build());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SampleRandomTest {
+
+    private static List<String> values(SampleRandom random, String key, String attributeName) {
+        Random generator = random.forEntity(key);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            values.add(random.attributeValue(attributeName, generator));
+        }
+        return values;
+    }
+
+    @Test
+    public void sameSeedAndKeyGiveTheSameValues() {
+        assertEquals(values(new SampleRandom(42), "PART-001", "weight"),
+                values(new SampleRandom(42), "PART-001", "weight"));
+    }
+
+    @Test
+    public void valuesDoNotDependOnCreationOrder() {
+        SampleRandom random = new SampleRandom(42);
+        List<String> first = values(random, "PART-001", "weight");
+        values(random, "PART-002", "weight");
+        values(random, "PART-003", "weight");
+        assertEquals(first, values(random, "PART-001", "weight"));
+    }
+
+    @Test
+    public void closeSeedsAndKeysGiveUnrelatedValues() {
+        List<String> values = values(new SampleRandom(42), "PART-001", "weight");
+        assertNotEquals(values, values(new SampleRandom(43), "PART-001", "weight"));
+        assertNotEquals(values, values(new SampleRandom(42), "PART-002", "weight"));
+        assertNotEquals(new SampleRandom(0).forEntity("").nextLong(), new SampleRandom(1).forEntity("").nextLong());
+    }
+
+    @Test
+    public void distributionsAreParsedFromTheirDescription() {
+        SampleRandom random = new SampleRandom(7);
+        random.setDistributions("weight=uniform:5:10, color=constant:red, normal:100:0");
+        Random generator = random.forEntity("PART-001");
+        for (int i = 0; i < 100; i++) {
+            double weight = Double.parseDouble(random.attributeValue("weight", generator));
+            assertTrue(weight >= 5 && weight < 10);
+        }
+        assertEquals("red", random.attributeValue("color", generator));
+        assertEquals(100, Double.parseDouble(random.attributeValue("price", generator)), 0);
+        assertEquals(100, Double.parseDouble(random.attributeValue(null, generator)), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownDistribution() {
+        new SampleRandom(7).setDistributions("weight=poisson:3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidParameters() {
+        new SampleRandom(7).setDistributions("weight=uniform:5");
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * DocDoku, Professional Open Source
+ * Copyright 2006 - 2017 DocDoku SARL
+ *
+ * This file is part of DocDokuPLM.
+ *
+ * DocDokuPLM is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DocDokuPLM is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with DocDokuPLM.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.docdoku.loaders;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TraceRecordTest {
+
+    private static TraceRecord record(long sequence, String method, String path, int status) {
+        TraceRecord record = new TraceRecord();
+        record.sequence = sequence;
+        record.completedBefore = (int) sequence / 2;
+        record.start = sequence * 1000000;
+        record.duration = 2500000;
+        record.method = method;
+        record.path = path;
+        record.status = status;
+        return record;
+    }
+
+    private static byte[] write(TraceRecord... records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            TraceRecord.writeHeader(out, "w1");
+            for (TraceRecord record : records) {
+                record.writeTo(out);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream read(byte[] trace) {
+        return new DataInputStream(new ByteArrayInputStream(trace));
+    }
+
+    @Test
+    public void recordsSurviveARoundTrip() throws IOException {
+        TraceRecord created = record(1, "POST", "/api/workspaces/w1/parts", 201);
+        created.contentType = "application/json";
+        created.body = "{\"number\":\"P-001\"}".getBytes(StandardCharsets.UTF_8);
+        created.createdId = "42";
+
+        TraceRecord uploaded = record(2, "POST", "/api/files/w1/parts/P-001/A/1/nativecad", 200);
+        uploaded.contentType = "multipart/form-data; boundary=b";
+        uploaded.fileName = "part.obj";
+        uploaded.length = 5L * 1024 * 1024 * 1024;
+
+        TraceRecord listed = record(3, "GET", "/api/workspaces/w1/parts?start=0", 200);
+
+        DataInputStream in = read(write(created, uploaded, listed));
+        assertEquals("w1", TraceRecord.readHeader(in));
+
+        TraceRecord record = TraceRecord.readFrom(in);
+        assertEquals(1, record.sequence);
+        assertEquals(0, record.completedBefore);
+        assertEquals(1000000, record.start);
+        assertEquals(2500000, record.duration);
+        assertEquals("POST", record.method);
+        assertEquals("/api/workspaces/w1/parts", record.path);
+        assertEquals(201, record.status);
+        assertEquals("application/json", record.contentType);
+        assertArrayEquals(created.body, record.body);
+        assertEquals(created.body.length, record.length);
+        assertEquals("42", record.createdId);
+        assertFalse(record.isUpload());
+
+        record = TraceRecord.readFrom(in);
+        assertTrue(record.isUpload());
+        assertEquals("part.obj", record.fileName);
+        assertEquals("multipart/form-data; boundary=b", record.contentType);
+        assertEquals(5L * 1024 * 1024 * 1024, record.length);
+        assertNull(record.body);
+
+        record = TraceRecord.readFrom(in);
+        assertEquals("GET", record.method);
+        assertEquals("/api/workspaces/w1/parts?start=0", record.path);
+        assertNull(record.body);
+        assertNull(record.createdId);
+        assertFalse(record.isUpload());
+
+        assertNull(TraceRecord.readFrom(in));
+    }
+
+    @Test
+    public void recordCutByAnInterruptedRecordingEndsTheTrace() throws IOException {
+        TraceRecord created = record(1, "PUT", "/api/workspaces/w1/parts/P-001-A", 200);
+        created.body = new byte[100];
+        byte[] trace = write(record(0, "GET", "/api/languages", 200), created);
+
+        DataInputStream in = read(Arrays.copyOf(trace, trace.length - 10));
+        TraceRecord.readHeader(in);
+        assertEquals("/api/languages", TraceRecord.readFrom(in).path);
+        assertNull(TraceRecord.readFrom(in));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherFile() throws IOException {
+        TraceRecord.readHeader(read("{\"workspace\":\"w1\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherVersion() throws IOException {
+        byte[] trace = write();
+        trace[5]++;
+        TraceRecord.readHeader(read(trace));
+    }
+
+    @Test
+    public void findsTheIdOfACreatedEntity() {
+        assertEquals("7", TraceRecord.id(utf8("{\"id\":7,\"title\":\"M1\"}")));
+        assertEquals("DOC-001", TraceRecord.id(utf8("{\"id\":\"DOC-001\"}")));
+        assertNull(TraceRecord.id(utf8("{\"title\":\"M1\"}")));
+        assertNull(TraceRecord.id(utf8("[{\"id\":7}]")));
+        assertNull(TraceRecord.id(utf8("not json {")));
+    }
+
+    @Test
+    public void masksPasswordsAtAnyDepth() {
+        String redacted = new String(TraceRecord.redact(utf8(
+                "{\"login\":\"john\",\"newPassword\":\"secret\",\"account\":{\"password\":\"secret\"}}")),
+                StandardCharsets.UTF_8);
+        assertFalse(redacted.contains("secret"));
+        assertTrue(redacted.contains("\"login\":\"john\""));
+
+        byte[] body = utf8("{\"title\":\"a = b\"}");
+        assertArrayEquals(body, TraceRecord.redact(body));
+        byte[] text = utf8("password=secret");
+        assertArrayEquals(text, TraceRecord.redact(text));
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}